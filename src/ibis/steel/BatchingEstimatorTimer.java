@@ -0,0 +1,165 @@
+package ibis.steel;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A thread-safe stopwatch that buffers the measured durations per thread, and
+ * adds them to an estimator in bulk. Like an {@link EstimatorTimer} it can be
+ * used as a resource in a <code>try</code> statement, and it can time only one
+ * in every <em>n</em> measurements.
+ * <p>
+ * The buffer of a thread is flushed when it is full, or when that thread
+ * calls {@link #flush()}. A flush synchronizes on the estimator, so other
+ * code that uses the estimator concurrently should also synchronize on it.
+ * Durations that are still buffered by a thread that terminates are lost.
+ */
+public class BatchingEstimatorTimer implements Closeable {
+    /** The default number of buffered durations per thread. */
+    static final int DEFAULT_BUFFER_SIZE = 256;
+
+    private final Estimator estimator;
+    private final double scale;
+    private final int interval;
+    private final int bufferSize;
+
+    private static class Buffer {
+        final long durations[];
+        int count = 0;
+        int countdown = 0;
+        boolean running = false;
+        long startTime;
+
+        Buffer(final int size) {
+            durations = new long[size];
+        }
+    }
+
+    private final ThreadLocal<Buffer> buffers = new ThreadLocal<Buffer>() {
+        @Override
+        protected Buffer initialValue() {
+            return new Buffer(bufferSize);
+        }
+    };
+
+    /**
+     * Constructs a new batching timer.
+     *
+     * @param estimator
+     *            The estimator to add the durations to.
+     * @param unit
+     *            The time unit of the samples.
+     * @param interval
+     *            The number of measurements per timed measurement.
+     * @param bufferSize
+     *            The number of durations to buffer per thread.
+     */
+    public BatchingEstimatorTimer(final Estimator estimator,
+            final TimeUnit unit, final int interval, final int bufferSize) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Bad sampling interval: "
+                    + interval);
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Bad buffer size: "
+                    + bufferSize);
+        }
+        this.estimator = estimator;
+        this.scale = EstimatorTimer.getScale(unit);
+        this.interval = interval;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Constructs a new batching timer that times every measurement, and
+     * buffers 256 durations per thread.
+     *
+     * @param estimator
+     *            The estimator to add the durations to.
+     * @param unit
+     *            The time unit of the samples.
+     */
+    public BatchingEstimatorTimer(final Estimator estimator,
+            final TimeUnit unit) {
+        this(estimator, unit, 1, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Starts a measurement in the current thread.
+     *
+     * @return This timer.
+     */
+    public BatchingEstimatorTimer start() {
+        final Buffer b = buffers.get();
+        if (--b.countdown <= 0) {
+            b.countdown = interval;
+            b.running = true;
+            b.startTime = System.nanoTime();
+        }
+        return this;
+    }
+
+    /**
+     * Stops the measurement of the current thread, and buffers its duration.
+     */
+    public void stop() {
+        final long now = System.nanoTime();
+        final Buffer b = buffers.get();
+        if (b.running) {
+            b.running = false;
+            add(b, now - b.startTime);
+        }
+    }
+
+    /**
+     * Buffers the given duration.
+     *
+     * @param nanos
+     *            The duration in nanoseconds.
+     */
+    public void addDuration(final long nanos) {
+        add(buffers.get(), nanos);
+    }
+
+    private void add(final Buffer b, final long nanos) {
+        b.durations[b.count++] = nanos;
+        if (b.count == b.durations.length) {
+            flush(b);
+        }
+    }
+
+    private void flush(final Buffer b) {
+        synchronized (estimator) {
+            for (int i = 0; i < b.count; i++) {
+                estimator.addSample(Math.max(b.durations[i], 1L) * scale);
+            }
+        }
+        b.count = 0;
+    }
+
+    /**
+     * Adds the durations that are buffered by the current thread to the
+     * estimator.
+     */
+    public void flush() {
+        flush(buffers.get());
+    }
+
+    /**
+     * Stops the measurement of the current thread. Equivalent to
+     * {@link #stop()}.
+     */
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * Returns the estimator of this timer.
+     *
+     * @return The estimator.
+     */
+    public Estimator getEstimator() {
+        return estimator;
+    }
+}
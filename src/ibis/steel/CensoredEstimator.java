@@ -0,0 +1,19 @@
+package ibis.steel;
+
+/**
+ * The interface of an estimator that also accepts right-censored samples:
+ * observations of which only a lower bound is known. For example, when a task
+ * is killed after a timeout, its duration is only known to be at least the
+ * timeout.
+ */
+public interface CensoredEstimator extends Estimator {
+    /**
+     * Adds a sample of which only a lower bound is known. The estimator
+     * replaces the sample by its expected value under the current model,
+     * given that it is at least the lower bound.
+     *
+     * @param lowerBound
+     *            The lower bound of the sample.
+     */
+    void addCensoredSample(double lowerBound);
+}
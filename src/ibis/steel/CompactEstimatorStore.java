@@ -0,0 +1,371 @@
+package ibis.steel;
+
+import java.util.Random;
+
+/**
+ * A fixed-size array of estimators in a compact representation, for
+ * applications that need many millions of estimators, for example one for
+ * every combination of task type, node and data size. Every estimator takes
+ * 10 bytes: its mean and variance are stored as <code>float</code>, and its
+ * sample count as a <code>char</code> that saturates at 65535. A
+ * {@link GaussianEstimator} or {@link LogGaussianEstimator}, in contrast,
+ * takes 32 to 40 bytes, plus the reference to it.
+ * <p>
+ * A store models either the samples, as a {@link GaussianEstimator} does, or
+ * their logarithms, as a {@link LogGaussianEstimator} does. With a decay
+ * factor the estimators behave as a {@link GaussianDecayingEstimator} or a
+ * {@link LogGaussianDecayingEstimator} instead. The updates are computed in
+ * double precision, and only the results are rounded to <code>float</code>.
+ * <p>
+ * Error bounds, compared with the full-precision estimators on the same
+ * samples, as verified by {@link #main(String[])}:
+ * <ul>
+ * <li>Every update rounds the mean and the variance with a relative error
+ * of at most 2^-24 (about 6e-8). Since the rounding error of the mean is
+ * relative to the mean, not to the spread, the error in standard deviations
+ * grows with the ratio <code>r = |mean|/sd</code>; for a logarithmic store
+ * this is the ratio of the mean and the standard deviation of the log. The
+ * error of earlier updates is damped by the weight of the old state in
+ * every update, and rounding errors are hardly correlated, so the errors
+ * add up to about <code>2^-24*max(r,1)*g</code> standard deviations. For a
+ * decaying estimator <code>g</code> is <code>1/sqrt(2*alpha)</code>. For a
+ * cumulative estimator with <code>n</code> samples it is
+ * <code>sqrt(n/3)</code>, but <code>n</code> is at most about
+ * <code>2^25/r</code>: beyond that the increments of the mean are smaller
+ * than half a unit in the last place, so the mean no longer changes. For
+ * means between 1e-3 and 1e6 and coefficients of variation between 0.1 and
+ * 1e-4, the errors of the mean and the standard deviation stay below 2.5
+ * times this bound. For example, with <code>r=10</code> a cumulative
+ * estimator with 65535 samples stays within 2e-4 standard deviations, but
+ * with <code>r=1e4</code> its error can reach 5e-2 standard deviations, and
+ * that of a decaying estimator with <code>alpha=0.01</code> 1e-2 standard
+ * deviations. Since the mean of a cumulative estimator stops changing, the
+ * initial mean must be within a few standard deviations of the samples. For
+ * workloads with a large <code>r</code>, store the deviation from a known
+ * typical value, or use the full-precision estimators.</li>
+ * <li>The sample count saturates at 65535. After that a cumulative estimator
+ * gives every new sample a weight of 1/65535, as if it were a decaying
+ * estimator with that decay factor. Since the estimate then hardly changes
+ * anyway, this makes no practical difference.</li>
+ * <li>The mean and variance must fit in a <code>float</code>: their
+ * magnitude must be below 3.4e38, and magnitudes below 1.2e-38 lose
+ * precision. For a log-Gaussian store this only restricts the logarithm of
+ * the samples, so all positive <code>double</code> samples are allowed.</li>
+ * </ul>
+ */
+public class CompactEstimatorStore {
+    private static final int MAX_COUNT = Character.MAX_VALUE;
+
+    private final boolean logarithmic;
+    private final double alpha;
+    private final float means[];
+    private final float variances[];
+    private final char counts[];
+
+    /**
+     * Constructs a new store. All estimators start with the given initial
+     * mean and variance.
+     *
+     * @param size
+     *            The number of estimators in the store.
+     * @param logarithmic
+     *            If <code>true</code>, the estimators model the logarithms
+     *            of the samples.
+     * @param alpha
+     *            The decay factor of the estimators, or 0 for estimators
+     *            that give all samples the same weight.
+     * @param mean
+     *            The initial mean, or the initial mean of the log for a
+     *            logarithmic store.
+     * @param variance
+     *            The initial variance, or the initial variance of the log for
+     *            a logarithmic store.
+     */
+    public CompactEstimatorStore(final int size, final boolean logarithmic,
+            final double alpha, final double mean, final double variance) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Bad size: " + size);
+        }
+        if (alpha < 0 || alpha >= 1 || Double.isNaN(alpha)) {
+            throw new IllegalArgumentException("Bad decay factor: " + alpha);
+        }
+        this.logarithmic = logarithmic;
+        this.alpha = alpha;
+        means = new float[size];
+        variances = new float[size];
+        counts = new char[size];
+        for (int i = 0; i < size; i++) {
+            set(i, mean, variance, 1);
+        }
+    }
+
+    /**
+     * Returns the number of estimators in the store.
+     *
+     * @return The number of estimators.
+     */
+    public int size() {
+        return means.length;
+    }
+
+    /**
+     * Returns <code>true</code> iff the estimators model the logarithms of
+     * the samples.
+     *
+     * @return Whether the store is logarithmic.
+     */
+    public boolean isLogarithmic() {
+        return logarithmic;
+    }
+
+    private void set(final int i, final double mean, final double variance,
+            final int sampleCount) {
+        if (Double.isNaN(mean) || Math.abs(mean) > Float.MAX_VALUE) {
+            throw new IllegalArgumentException("Bad mean: " + mean);
+        }
+        if (!(variance >= 0 && variance <= Float.MAX_VALUE)) {
+            throw new IllegalArgumentException("Bad variance: " + variance);
+        }
+        means[i] = (float) mean;
+        variances[i] = (float) variance;
+        counts[i] = (char) Math.max(0, Math.min(sampleCount, MAX_COUNT));
+    }
+
+    /**
+     * Adds a sample to the given estimator.
+     *
+     * @param i
+     *            The index of the estimator.
+     * @param v
+     *            The sample.
+     */
+    public void addSample(final int i, final double v) {
+        final double x;
+        if (logarithmic) {
+            if (v <= 0 || Double.isInfinite(v)) {
+                throw new IllegalArgumentException("Bad sample: v=" + v);
+            }
+            x = FastMath.log(v);
+        } else {
+            x = v;
+        }
+        final double mean = means[i];
+        final double variance = variances[i];
+        final int count = counts[i];
+        final double diff = x - mean;
+        if (alpha == 0) {
+            final int n = Math.min(count + 1, MAX_COUNT);
+            final double newMean = mean + diff / n;
+            means[i] = (float) newMean;
+            variances[i] = (float) (((n - 1) * variance + diff
+                    * (x - newMean))
+                    / n);
+        } else {
+            final double incr = alpha * diff;
+            means[i] = (float) (mean + incr);
+            variances[i] = (float) ((1 - alpha) * (variance + diff * incr));
+        }
+        if (count < MAX_COUNT) {
+            counts[i] = (char) (count + 1);
+        }
+    }
+
+    /**
+     * Returns the number of samples of the given estimator, including the
+     * initial value. The count saturates at 65535.
+     *
+     * @param i
+     *            The index of the estimator.
+     * @return The sample count.
+     */
+    public int getSampleCount(final int i) {
+        return counts[i];
+    }
+
+    /**
+     * Returns the high estimate of the given estimator: the mean plus the
+     * standard deviation, or for a logarithmic store, the exponent of the
+     * mean plus the standard deviation of the log.
+     *
+     * @param i
+     *            The index of the estimator.
+     * @return The high estimate.
+     */
+    public double getHighEstimate(final int i) {
+        final double high = means[i] + Math.sqrt(variances[i]);
+        return logarithmic ? FastMath.exp(high) : high;
+    }
+
+    /**
+     * Returns the estimate of the given estimator. This is a
+     * {@link LogGaussianEstimate} for a logarithmic store, and a
+     * {@link GaussianEstimate} otherwise.
+     *
+     * @param i
+     *            The index of the estimator.
+     * @return The estimate.
+     */
+    public Estimate getEstimate(final int i) {
+        if (logarithmic) {
+            return new LogGaussianEstimate(means[i], variances[i], counts[i]);
+        }
+        return new GaussianEstimate(means[i], variances[i], counts[i]);
+    }
+
+    /**
+     * Replaces the state of the given estimator with the given estimate. The
+     * estimate must be a {@link LogGaussianEstimate} for a logarithmic store,
+     * and a {@link GaussianEstimate} otherwise. Its mean and variance are
+     * rounded to <code>float</code>, and its sample count is limited to
+     * 65535.
+     *
+     * @param i
+     *            The index of the estimator.
+     * @param est
+     *            The new estimate.
+     */
+    public void setEstimate(final int i, final Estimate est) {
+        if (logarithmic && est instanceof LogGaussianEstimate) {
+            final LogGaussianEstimate lest = (LogGaussianEstimate) est;
+            set(i, lest.logMean, lest.logVariance, lest.sampleCount);
+        } else if (!logarithmic && est instanceof GaussianEstimate) {
+            final GaussianEstimate gest = (GaussianEstimate) est;
+            set(i, gest.mean, gest.variance, gest.sampleCount);
+        } else {
+            throw new IllegalArgumentException(
+                    "CompactEstimatorStore: cannot store a "
+                            + est.getClass().getName() + " estimate in a "
+                            + (logarithmic ? "logarithmic" : "linear")
+                            + " store");
+        }
+    }
+
+    /**
+     * Returns a new full-precision estimator with the state of the given
+     * estimator. Later changes to either one do not affect the other; use
+     * {@link #setEstimate(int, Estimate)} with the estimate of the new
+     * estimator to store it back.
+     *
+     * @param i
+     *            The index of the estimator.
+     * @return The new estimator.
+     */
+    public Estimator newEstimator(final int i) {
+        final double mean = means[i];
+        final double variance = variances[i];
+        final int count = counts[i];
+        if (logarithmic) {
+            if (alpha == 0) {
+                return new LogGaussianEstimator(mean, variance, count);
+            }
+            return new LogGaussianDecayingEstimator(mean, variance, alpha,
+                    count);
+        }
+        if (alpha == 0) {
+            return new GaussianEstimator(mean, variance, count);
+        }
+        return new GaussianDecayingEstimator(mean, variance, alpha, count);
+    }
+
+    /**
+     * Returns the largest difference in mean and in standard deviation
+     * between the given compact and full-precision estimators, relative to
+     * the standard deviation of the full-precision one, and divided by the
+     * bound <code>2^-24*max(r,1)*g</code> from the class documentation.
+     */
+    private static double getError(final Estimate compact,
+            final Estimate full, final double g) {
+        final double m1;
+        final double m2;
+        final double s1;
+        final double s2;
+        if (full instanceof LogGaussianEstimate) {
+            m1 = ((LogGaussianEstimate) compact).logMean;
+            s1 = Math.sqrt(((LogGaussianEstimate) compact).logVariance);
+            m2 = ((LogGaussianEstimate) full).logMean;
+            s2 = Math.sqrt(((LogGaussianEstimate) full).logVariance);
+        } else {
+            m1 = ((GaussianEstimate) compact).mean;
+            s1 = Math.sqrt(((GaussianEstimate) compact).variance);
+            m2 = ((GaussianEstimate) full).mean;
+            s2 = Math.sqrt(((GaussianEstimate) full).variance);
+        }
+        final double err = Math.max(Math.abs(m1 - m2), Math.abs(s1 - s2)) / s2;
+        final double r = Math.max(Math.abs(m2) / s2, 1);
+        return err / (Math.scalb(1.0, -24) * r * g);
+    }
+
+    /**
+     * Returns the largest error of a compact estimator, as returned by
+     * {@link #getError(Estimate, Estimate, double)}, for samples with the
+     * given mean and coefficient of variation.
+     */
+    private static double test(final boolean logarithmic, final double alpha,
+            final double mean, final double cv, final int samples) {
+        final Random rng = new Random(samples);
+        final double stdDev = cv * mean;
+        final double initialMean = logarithmic ? 1 + Math.log(mean) : mean;
+        final double initialVariance = logarithmic ? cv * cv : stdDev * stdDev;
+        final CompactEstimatorStore store = new CompactEstimatorStore(1,
+                logarithmic, alpha, initialMean, initialVariance);
+        final Estimator full = store.newEstimator(0);
+        final double r = Math.max(Math.abs(initialMean)
+                / Math.sqrt(initialVariance), 1);
+        final double g = alpha == 0 ? Math.sqrt(Math.min(samples,
+                Math.scalb(1.0, 25) / r) / 3) : 1 / Math.sqrt(2 * alpha);
+        double maxError = 0;
+        for (int n = 1; n <= samples; n++) {
+            final double x = mean + stdDev * rng.nextGaussian();
+            final double v = logarithmic ? Math.exp(x / mean) * mean : x;
+            store.addSample(0, v);
+            full.addSample(v);
+            if (n % 100 == 0 || n == samples) {
+                maxError = Math.max(maxError,
+                        getError(store.getEstimate(0), full.getEstimate(), g));
+            }
+        }
+        return maxError;
+    }
+
+    /**
+     * Verifies the error bounds of the compact estimators against the
+     * full-precision ones, for a range of means and coefficients of
+     * variation.
+     *
+     * @param args
+     *            Ignored.
+     */
+    public static void main(final String[] args) {
+        final double alphas[] = { 0, 0.01, 0.1 };
+        final double means[] = { 1e-3, 1, 1e3, 1e6 };
+        final double cvs[] = { 0.1, 1e-2, 1e-3, 1e-4 };
+        double maxError = 0;
+        for (final boolean logarithmic : new boolean[] { false, true }) {
+            for (final double alpha : alphas) {
+                for (final double mean : means) {
+                    for (final double cv : cvs) {
+                        final double err = test(logarithmic, alpha, mean, cv,
+                                alpha == 0 ? MAX_COUNT - 1 : 1000000);
+                        System.out.println((logarithmic ? "log-gaussian"
+                                : "gaussian")
+                                + " alpha="
+                                + alpha
+                                + " mean="
+                                + mean
+                                + " cv="
+                                + cv
+                                + ": max error "
+                                + Utils.formatNumber(err) + " of the bound");
+                        maxError = Math.max(maxError, err);
+                    }
+                }
+            }
+        }
+        System.out.println("max error: " + Utils.formatNumber(maxError)
+                + " of the bound");
+        if (maxError > 2.5) {
+            System.out.println("Error bound exceeded");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ibis.steel;
+
+/**
+ * Verifies the conditional estimates of the Gaussian and log-Gaussian
+ * estimates, {@link Estimate#getExpectedRemaining(double)} and
+ * {@link Estimate#getExceedanceProbability(double, double)}, against Monte
+ * Carlo simulations. Every check is reported, and the program exits with
+ * status 1 if one of them fails.
+ */
+class ConditionalEstimateCheck {
+    /**
+     * Checks the expected remainder and the exceedance probability of the
+     * given estimate against the given draws from its distribution. For every
+     * elapsed value <code>t</code>, the deadline is <code>t+step</code>. The
+     * tolerance is four standard errors of the Monte Carlo estimate.
+     */
+    private static void checkConditional(final String name,
+            final Estimate est, final double draws[], final double elapsed[],
+            final double step) {
+        for (final double t : elapsed) {
+            final double d = t + step;
+            long above = 0;
+            long aboveDeadline = 0;
+            double sumRemaining = 0;
+            double sumSquaredRemaining = 0;
+            for (final double x : draws) {
+                if (x > t) {
+                    above++;
+                    sumRemaining += x - t;
+                    sumSquaredRemaining += (x - t) * (x - t);
+                    if (x > d) {
+                        aboveDeadline++;
+                    }
+                }
+            }
+            final double remaining = sumRemaining / above;
+            final double remainingVariance = sumSquaredRemaining / above
+                    - remaining * remaining;
+            MonteCarloCheck.check(name + " remaining after " + t,
+                    est.getExpectedRemaining(t), remaining,
+                    4 * Math.sqrt(remainingVariance / above) / remaining);
+            final double p = (double) aboveDeadline / above;
+            MonteCarloCheck.check(name + " exceedance of " + d + " after " + t,
+                    est.getExceedanceProbability(t, d), p,
+                    4 * Math.sqrt(p * (1 - p) / above) / p);
+        }
+    }
+
+    /**
+     * Checks the conditional estimates of the Gaussian and log-Gaussian
+     * estimates against the truncated distributions of random draws, and the
+     * expected remainder of a Gaussian estimate deep in the tail against its
+     * asymptotic expansion <code>stdDev*(1/z-2/z^3+10/z^5)</code>.
+     *
+     * @param args
+     *            Ignored.
+     */
+    public static void main(final String[] args) {
+        final int n = 2000000;
+        checkConditional("gaussian", new GaussianEstimate(10, 4, 100),
+                MonteCarloCheck.draw(10, 2, false, n, 3), new double[] { 6,
+                        10, 13 }, 2);
+        checkConditional("log-gaussian", new LogGaussianEstimate(2, 0.25, 100),
+                MonteCarloCheck.draw(2, 0.5, true, n, 4), new double[] { 3,
+                        7.4, 15 }, 5);
+        final GaussianEstimate est = new GaussianEstimate(10, 4, 100);
+        for (final double z : new double[] { 10, 1e4, 1e8 }) {
+            MonteCarloCheck.check("gaussian remaining at z=" + z,
+                    est.getExpectedRemaining(10 + 2 * z), 2 * (1 / z - 2
+                            / (z * z * z) + 10 / (z * z * z * z * z)),
+                    z > 100 ? 1e-12 : 1e-4);
+        }
+        MonteCarloCheck.finish();
+    }
+}
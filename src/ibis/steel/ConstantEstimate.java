@@ -54,6 +54,17 @@ public class ConstantEstimate implements Estimate {
         return new ConstantEstimate(c * v);
     }
 
+    @Override
+    public Estimate sumIndependent(final int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Negative count: k=" + k);
+        }
+        if (k == 0) {
+            return ConstantEstimate.ZERO;
+        }
+        return new ConstantEstimate(k * v);
+    }
+
     @Override
     public double getLikelyValue() {
         return v;
@@ -64,6 +75,17 @@ public class ConstantEstimate implements Estimate {
         return v;
     }
 
+    @Override
+    public double getExpectedRemaining(final double elapsed) {
+        return Math.max(v - elapsed, 0);
+    }
+
+    @Override
+    public double getExceedanceProbability(final double elapsed,
+            final double deadline) {
+        return deadline < v ? 1 : 0;
+    }
+
     @Override
     public String toString() {
         return Utils.formatNumber(v);
@@ -0,0 +1,22 @@
+package ibis.steel;
+
+/**
+ * A leaf of an estimate expression graph with a fixed estimate.
+ */
+class ConstantExpression extends EstimateExpression {
+    private final Estimate est;
+
+    ConstantExpression(final Estimate est) {
+        this.est = est;
+    }
+
+    @Override
+    Estimate compute() {
+        return est;
+    }
+
+    @Override
+    public String toString() {
+        return est.toString();
+    }
+}
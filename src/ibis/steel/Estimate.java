@@ -36,6 +36,29 @@ public interface Estimate extends Serializable {
      */
     Estimate multiply(double v);
 
+    /**
+     * Returns a new estimate for the sum of <code>k</code> independent values
+     * that each have the distribution of this estimate. In contrast to
+     * <code>multiply(k)</code>, which models <code>k</code> perfectly
+     * correlated values, the variance of the sum grows linearly with
+     * <code>k</code>. This takes constant time, regardless of <code>k</code>.
+     * <p>
+     * The result need not equal the sum of <code>k</code> copies formed with
+     * {@link #addIndependent(Estimate)}. A {@link LogGaussianEstimate}
+     * returns the log-Gaussian with the exact mean and variance of the sum
+     * (the Fenton-Wilkinson approximation), whereas its
+     * <code>addIndependent</code> adds the exponents of the log means and of
+     * the log variances, which overstates the spread. For a log mean of 1 and
+     * a log variance of 0.5, the sum of two values has a log variance of 0.28
+     * and a high estimate of 10.3 here, but a log variance of 1.19 and a high
+     * estimate of 16.2 with <code>addIndependent</code>.
+     *
+     * @param k
+     *            The number of values to add.
+     * @return The new estimate.
+     */
+    Estimate sumIndependent(int k);
+
     /**
      * Returns a random but likely value for this estimate.
      * 
@@ -50,4 +73,29 @@ public interface Estimate extends Serializable {
      * @return The high estimate.
      */
     double getHighEstimate();
+
+    /**
+     * Given that the value is known to be larger than <code>elapsed</code>,
+     * returns the expected amount by which it is larger. For example, for a
+     * task that has already run for <code>elapsed</code> time units, this is
+     * its expected remaining time.
+     * 
+     * @param elapsed
+     *            The known lower bound of the value.
+     * @return The expected remainder.
+     */
+    double getExpectedRemaining(double elapsed);
+
+    /**
+     * Given that the value is known to be larger than <code>elapsed</code>,
+     * returns the probability that it is also larger than
+     * <code>deadline</code>.
+     * 
+     * @param elapsed
+     *            The known lower bound of the value.
+     * @param deadline
+     *            The deadline.
+     * @return The probability that the value exceeds the deadline.
+     */
+    double getExceedanceProbability(double elapsed, double deadline);
 }
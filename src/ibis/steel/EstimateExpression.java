@@ -0,0 +1,132 @@
+package ibis.steel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A node in a graph of estimate expressions. The leaves of the graph are
+ * estimators or constant estimates, and the inner nodes combine the estimates
+ * of their operands with {@link Estimate#addIndependent(Estimate)} or
+ * {@link Estimate#multiply(double)}.
+ * <p>
+ * Every node caches its estimate. When a leaf changes, only the nodes on the
+ * paths from that leaf to the roots are marked as dirty, and only those are
+ * recomputed on the next call to {@link #getEstimate()}. Thus the cost of a
+ * reevaluation depends on the part of the graph that changed, not on the size
+ * of the graph.
+ */
+public abstract class EstimateExpression {
+    private final List<EstimateExpression> parents = new ArrayList<EstimateExpression>(
+            1);
+    private Estimate cached = null;
+    private boolean dirty = true;
+
+    /**
+     * Computes the estimate of this node from the estimates of its operands.
+     *
+     * @return The estimate of this node.
+     */
+    abstract Estimate compute();
+
+    void addParent(final EstimateExpression parent) {
+        parents.add(parent);
+    }
+
+    /**
+     * Marks this node and all nodes that depend on it as dirty. Nodes that
+     * are already dirty stop the propagation, since everything above them is
+     * already dirty as well.
+     */
+    void markDirty() {
+        if (!dirty) {
+            dirty = true;
+            for (final EstimateExpression p : parents) {
+                p.markDirty();
+            }
+        }
+    }
+
+    /**
+     * Returns the estimate of this expression. Only the parts of the
+     * expression that changed since the previous call are recomputed.
+     *
+     * @return The estimate.
+     */
+    public Estimate getEstimate() {
+        if (dirty) {
+            cached = compute();
+            dirty = false;
+        }
+        return cached;
+    }
+
+    /**
+     * Returns a leaf expression for the given estimator. Samples should be
+     * added through the returned expression, so that the graph knows about
+     * the change.
+     *
+     * @param est
+     *            The estimator of the leaf.
+     * @return The new leaf expression.
+     */
+    public static EstimatorExpression leaf(final Estimator est) {
+        return new EstimatorExpression(est);
+    }
+
+    /**
+     * Returns a leaf expression with a fixed estimate.
+     *
+     * @param est
+     *            The estimate of the leaf.
+     * @return The new leaf expression.
+     */
+    public static EstimateExpression constant(final Estimate est) {
+        return new ConstantExpression(est);
+    }
+
+    /**
+     * Returns an expression that is the sum of the given independent
+     * expressions. The sum is built as a balanced tree of additions, so that
+     * a change in one of the <code>n</code> operands only costs
+     * <code>log(n)</code> additions to reevaluate.
+     *
+     * @param operands
+     *            The expressions to add.
+     * @return The new expression.
+     */
+    public static EstimateExpression sum(final EstimateExpression... operands) {
+        if (operands.length == 0) {
+            return new ConstantExpression(ConstantEstimate.ZERO);
+        }
+        return sum(operands, 0, operands.length);
+    }
+
+    /**
+     * Returns a balanced tree of additions of the operands from index
+     * <code>from</code> up to, but not including, index <code>to</code>.
+     */
+    private static EstimateExpression sum(
+            final EstimateExpression operands[], final int from, final int to) {
+        if (to - from == 1) {
+            return operands[from];
+        }
+        final int mid = (from + to) >>> 1;
+        return new SumExpression(sum(operands, from, mid), sum(operands, mid,
+                to));
+    }
+
+    /**
+     * Returns an expression that is the product of the given expression and
+     * the constant <code>c</code>.
+     *
+     * @param operand
+     *            The expression to multiply.
+     * @param c
+     *            The constant to multiply with.
+     * @return The new expression.
+     */
+    public static EstimateExpression multiply(
+            final EstimateExpression operand, final double c) {
+        return new ScaledExpression(operand, c);
+    }
+}
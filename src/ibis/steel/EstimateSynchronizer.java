@@ -0,0 +1,359 @@
+package ibis.steel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the estimates of a set of local estimators synchronized with other
+ * machines. Local estimators are registered under a key; every call to
+ * {@link #getUpdate()} returns an {@link EstimateUpdate} with only those
+ * estimates that changed significantly since they were last sent. An estimate
+ * is considered to be changed significantly if its location or spread moved
+ * by more than a relative threshold, or if a given number of new samples was
+ * added to the estimator since it was last sent. Estimators that did not
+ * receive any samples since the last update are not even inspected. The
+ * estimate of a {@link PooledEstimator} also changes when its siblings add
+ * samples to the pool; this is detected with
+ * {@link PooledEstimator#getVersion()}.
+ * <p>
+ * Updates received from other machines are merged with
+ * {@link #applyUpdate(EstimateUpdate)}, after which the remote estimates are
+ * available through {@link #getRemoteEstimate(Serializable)}.
+ * <p>
+ * The {@link #main(String[])} method checks the synchronization of two
+ * synchronizers through serialized updates.
+ *
+ * @param <K>
+ *            The type of the keys of the estimators.
+ */
+public class EstimateSynchronizer<K extends Serializable> {
+    private final double threshold;
+    private final int maxSampleDelta;
+    private final Map<K, Entry> local = new LinkedHashMap<K, Entry>();
+    private final Map<K, Estimate> remote = new HashMap<K, Estimate>();
+
+    private static class Entry {
+        final Estimator estimator;
+        Estimate sent = null;
+        int sentSampleCount = -1;
+        long sentVersion = -1;
+
+        Entry(final Estimator estimator) {
+            this.estimator = estimator;
+        }
+    }
+
+    /**
+     * Constructs a new synchronizer.
+     *
+     * @param threshold
+     *            The relative change in location or spread of an estimate that
+     *            causes it to be sent again.
+     * @param maxSampleDelta
+     *            The number of new samples after which an estimate is sent
+     *            again, even if it did not change significantly. A value of 0
+     *            or less disables this.
+     */
+    public EstimateSynchronizer(final double threshold, final int maxSampleDelta) {
+        if (threshold < 0 || Double.isNaN(threshold)) {
+            throw new IllegalArgumentException("Bad threshold: " + threshold);
+        }
+        this.threshold = threshold;
+        this.maxSampleDelta = maxSampleDelta;
+    }
+
+    /**
+     * Constructs a new synchronizer that sends an estimate again if it changed
+     * by more than 5%, or after 100 new samples.
+     */
+    public EstimateSynchronizer() {
+        this(0.05, 100);
+    }
+
+    /**
+     * Registers a local estimator under the given key. The estimate of the
+     * estimator will be included in the next update.
+     *
+     * @param key
+     *            The key of the estimator.
+     * @param estimator
+     *            The estimator to synchronize.
+     */
+    public synchronized void register(final K key, final Estimator estimator) {
+        local.put(key, new Entry(estimator));
+    }
+
+    /**
+     * Stops synchronizing the estimator with the given key.
+     *
+     * @param key
+     *            The key of the estimator.
+     */
+    public synchronized void unregister(final K key) {
+        local.remove(key);
+    }
+
+    /**
+     * Returns a number that changes whenever the estimate of the given
+     * estimator may have changed.
+     */
+    private static long getVersion(final Estimator estimator) {
+        if (estimator instanceof PooledEstimator) {
+            return ((PooledEstimator) estimator).getVersion();
+        }
+        return estimator.getSampleCount();
+    }
+
+    /**
+     * Returns an update containing the estimates of all local estimators that
+     * changed significantly since the last update. The returned estimates are
+     * remembered as the last sent ones.
+     *
+     * @return The update. It may be empty.
+     */
+    public synchronized EstimateUpdate<K> getUpdate() {
+        final EstimateUpdate<K> res = new EstimateUpdate<K>();
+        for (final Map.Entry<K, Entry> e : local.entrySet()) {
+            final Entry entry = e.getValue();
+            final long version = getVersion(entry.estimator);
+            if (version == entry.sentVersion) {
+                continue;
+            }
+            final int sampleCount = entry.estimator.getSampleCount();
+            final Estimate est = entry.estimator.getEstimate();
+            if (entry.sent == null
+                    || (maxSampleDelta > 0 && sampleCount
+                            - entry.sentSampleCount >= maxSampleDelta)
+                    || isSignificantChange(entry.sent, est, threshold)) {
+                entry.sent = est;
+                entry.sentSampleCount = sampleCount;
+                entry.sentVersion = version;
+                res.add(e.getKey(), est);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Returns an update containing the estimates of all local estimators,
+     * regardless of whether they changed. This is suitable for machines that
+     * just joined the computation.
+     *
+     * @return The update.
+     */
+    public synchronized EstimateUpdate<K> getFullUpdate() {
+        final EstimateUpdate<K> res = new EstimateUpdate<K>();
+        for (final Map.Entry<K, Entry> e : local.entrySet()) {
+            final Entry entry = e.getValue();
+            final Estimate est = entry.estimator.getEstimate();
+            entry.sent = est;
+            entry.sentSampleCount = entry.estimator.getSampleCount();
+            entry.sentVersion = getVersion(entry.estimator);
+            res.add(e.getKey(), est);
+        }
+        return res;
+    }
+
+    /**
+     * Merges an update received from another machine with the remote
+     * estimates of this synchronizer.
+     *
+     * @param update
+     *            The update to merge.
+     */
+    public synchronized void applyUpdate(final EstimateUpdate<K> update) {
+        final int n = update.size();
+        for (int i = 0; i < n; i++) {
+            remote.put(update.getKey(i), update.getEstimate(i));
+        }
+    }
+
+    /**
+     * Returns the most recent estimate received for the given key, or
+     * <code>null</code> if no estimate was received for it.
+     *
+     * @param key
+     *            The key of the estimate.
+     * @return The estimate, or <code>null</code>.
+     */
+    public synchronized Estimate getRemoteEstimate(final K key) {
+        return remote.get(key);
+    }
+
+    private static double relativeChange(final double a, final double b) {
+        final double scale = Math.max(Math.abs(a), Math.abs(b));
+        if (scale == 0) {
+            return 0;
+        }
+        return Math.abs(a - b) / scale;
+    }
+
+    /**
+     * Returns true iff estimate <code>now</code> differs significantly from
+     * estimate <code>old</code>, given the relative threshold.
+     */
+    static boolean isSignificantChange(final Estimate old, final Estimate now,
+            final double threshold) {
+        if (old.getClass() != now.getClass()) {
+            return true;
+        }
+        if (now instanceof ConstantEstimate) {
+            return relativeChange(((ConstantEstimate) old).v,
+                    ((ConstantEstimate) now).v) > threshold;
+        }
+        if (now instanceof GaussianEstimate) {
+            final GaussianEstimate o = (GaussianEstimate) old;
+            final GaussianEstimate n = (GaussianEstimate) now;
+            final double oldStdDev = Math.sqrt(o.variance);
+            final double newStdDev = Math.sqrt(n.variance);
+            // Measure the shift of the mean relative to the mean or the
+            // spread, whichever is larger, so that means near zero do not
+            // cause spurious updates.
+            final double scale = Math.max(Math.max(Math.abs(o.mean),
+                    Math.abs(n.mean)), Math.max(oldStdDev, newStdDev));
+            return Math.abs(n.mean - o.mean) > threshold * scale
+                    || relativeChange(oldStdDev, newStdDev) > threshold;
+        }
+        if (now instanceof LogGaussianEstimate) {
+            final LogGaussianEstimate o = (LogGaussianEstimate) old;
+            final LogGaussianEstimate n = (LogGaussianEstimate) now;
+            // A shift of the log mean is (approximately) a relative change
+            // of the value itself.
+            return Math.abs(n.logMean - o.logMean) > threshold
+                    || relativeChange(Math.sqrt(o.logVariance),
+                            Math.sqrt(n.logVariance)) > threshold;
+        }
+        if (now instanceof InfiniteEstimate) {
+            return false;
+        }
+        return true;
+    }
+
+    private static int failures = 0;
+
+    private static void check(final String what, final boolean ok) {
+        if (!ok) {
+            failures++;
+        }
+        System.out.println((ok ? "ok     " : "FAILED ") + what);
+    }
+
+    /**
+     * Returns the given update after a round trip through serialization.
+     */
+    @SuppressWarnings("unchecked")
+    private static EstimateUpdate<String> loopback(
+            final EstimateUpdate<String> update) throws IOException,
+            ClassNotFoundException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(buffer);
+        out.writeObject(update);
+        out.close();
+        final ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(buffer.toByteArray()));
+        final EstimateUpdate<String> res = (EstimateUpdate<String>) in
+                .readObject();
+        in.close();
+        return res;
+    }
+
+    private static byte[] encode(final Estimate est) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(buffer);
+        EstimateUpdate.writeEstimate(out, est);
+        out.close();
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Sends an update from <code>from</code> to <code>to</code> through
+     * serialization, and checks that it contains exactly the given keys.
+     * Afterwards the remote estimate of every sent key must be identical to
+     * the local one, and the remote estimate of every other key must not
+     * differ significantly from the local one.
+     */
+    private static void checkUpdate(final String what,
+            final EstimateSynchronizer<String> from,
+            final EstimateSynchronizer<String> to, final String... expected)
+            throws IOException, ClassNotFoundException {
+        final EstimateUpdate<String> update = loopback(from.getUpdate());
+        final String keys[] = new String[update.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = update.getKey(i);
+        }
+        check(what + ": sent " + Arrays.toString(keys),
+                Arrays.equals(keys, expected));
+        to.applyUpdate(update);
+        for (final Map.Entry<String, Entry> e : from.local.entrySet()) {
+            final String key = e.getKey();
+            final Estimate est = e.getValue().estimator.getEstimate();
+            final Estimate remote = to.getRemoteEstimate(key);
+            if (Arrays.asList(keys).contains(key)) {
+                check(what + ": remote " + key + " equals local",
+                        Arrays.equals(encode(remote), encode(est)));
+            } else {
+                check(what + ": remote " + key + " is close to local",
+                        remote != null
+                                && !isSignificantChange(remote, est,
+                                        from.threshold));
+            }
+        }
+    }
+
+    /**
+     * Checks that updates sent through serialization contain only the
+     * changed estimates, including those of pooled estimators whose siblings
+     * changed the pool, and that the remote estimates equal the local ones.
+     *
+     * @param args
+     *            Ignored.
+     * @throws Exception
+     *             Thrown if an update cannot be serialized.
+     */
+    public static void main(final String[] args) throws Exception {
+        final EstimateSynchronizer<String> local;
+        final EstimateSynchronizer<String> remote;
+        local = new EstimateSynchronizer<String>();
+        remote = new EstimateSynchronizer<String>();
+        final Estimator a = new GaussianEstimator(10, 4);
+        final Estimator b = new LogGaussianEstimator(2, 0.25);
+        for (int i = 0; i < 50; i++) {
+            b.addSample(Math.exp(i % 2 == 0 ? 1.5 : 2.5));
+        }
+        final EstimatorPool pool = new EstimatorPool(10, 4, false);
+        final PooledEstimator p1 = pool.newEstimator();
+        final PooledEstimator p2 = pool.newEstimator();
+        local.register("a", a);
+        local.register("b", b);
+        local.register("p1", p1);
+        local.register("p2", p2);
+        checkUpdate("first update", local, remote, "a", "b", "p1", "p2");
+        checkUpdate("no change", local, remote);
+        b.addSample(Math.exp(2.001));
+        checkUpdate("insignificant change", local, remote);
+        a.addSample(30);
+        checkUpdate("changed estimator", local, remote, "a");
+        for (int i = 0; i < 20; i++) {
+            p1.addSample(30);
+        }
+        checkUpdate("changed pool", local, remote, "p1", "p2");
+        for (int i = 0; i < 100; i++) {
+            b.addSample(Math.exp(i % 2 == 0 ? 1.5 : 2.5));
+        }
+        checkUpdate("sample delta", local, remote, "b");
+        if (failures > 0) {
+            System.out.println(failures + " check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+}
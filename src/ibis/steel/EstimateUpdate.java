@@ -0,0 +1,167 @@
+package ibis.steel;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A set of changed estimates, as produced by an {@link EstimateSynchronizer}
+ * for transmission to other machines. Only the estimates that changed
+ * significantly since the previous update are included. The estimates are
+ * serialized in a compact form: a one-byte tag followed by the parameters of
+ * the estimate, instead of a full serialized object per estimate.
+ *
+ * @param <K>
+ *            The type of the keys of the estimates.
+ */
+public class EstimateUpdate<K extends Serializable> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final byte CONSTANT = 0;
+    private static final byte INFINITE = 1;
+    private static final byte GAUSSIAN = 2;
+    private static final byte LOG_GAUSSIAN = 3;
+
+    private transient List<K> keys = new ArrayList<K>();
+    private transient List<Estimate> estimates = new ArrayList<Estimate>();
+
+    void add(final K key, final Estimate est) {
+        keys.add(key);
+        estimates.add(est);
+    }
+
+    /**
+     * Returns the number of estimates in this update.
+     *
+     * @return The number of estimates.
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * Returns true iff this update does not contain any estimates.
+     *
+     * @return <code>true</code> iff the update is empty.
+     */
+    public boolean isEmpty() {
+        return keys.isEmpty();
+    }
+
+    /**
+     * Returns the key of the estimate with the given index.
+     *
+     * @param i
+     *            The index of the estimate.
+     * @return The key of the estimate.
+     */
+    public K getKey(final int i) {
+        return keys.get(i);
+    }
+
+    /**
+     * Returns the estimate with the given index.
+     *
+     * @param i
+     *            The index of the estimate.
+     * @return The estimate.
+     */
+    public Estimate getEstimate(final int i) {
+        return estimates.get(i);
+    }
+
+    static void writeEstimate(final DataOutput out, final Estimate est)
+            throws IOException {
+        if (est instanceof ConstantEstimate) {
+            out.writeByte(CONSTANT);
+            out.writeDouble(((ConstantEstimate) est).v);
+        } else if (est instanceof InfiniteEstimate) {
+            out.writeByte(INFINITE);
+        } else if (est instanceof GaussianEstimate) {
+            final GaussianEstimate gest = (GaussianEstimate) est;
+            out.writeByte(GAUSSIAN);
+            out.writeDouble(gest.mean);
+            out.writeDouble(gest.variance);
+            out.writeInt(gest.sampleCount);
+        } else if (est instanceof LogGaussianEstimate) {
+            final LogGaussianEstimate lest = (LogGaussianEstimate) est;
+            out.writeByte(LOG_GAUSSIAN);
+            out.writeDouble(lest.logMean);
+            out.writeDouble(lest.logVariance);
+            out.writeInt(lest.sampleCount);
+        } else {
+            throw new IllegalArgumentException(
+                    "EstimateUpdate: cannot encode a "
+                            + est.getClass().getName() + " estimate");
+        }
+    }
+
+    static Estimate readEstimate(final DataInput in) throws IOException {
+        final byte tag = in.readByte();
+        switch (tag) {
+        case CONSTANT:
+            return new ConstantEstimate(in.readDouble());
+
+        case INFINITE:
+            return InfiniteEstimate.INFINITE;
+
+        case GAUSSIAN: {
+            final double mean = in.readDouble();
+            final double variance = in.readDouble();
+            return new GaussianEstimate(mean, variance, in.readInt());
+        }
+
+        case LOG_GAUSSIAN: {
+            final double logMean = in.readDouble();
+            final double logVariance = in.readDouble();
+            return new LogGaussianEstimate(logMean, logVariance, in.readInt());
+        }
+
+        default:
+            throw new IOException("Unknown estimate tag " + tag);
+        }
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        final int n = keys.size();
+        out.writeInt(n);
+        for (int i = 0; i < n; i++) {
+            out.writeObject(keys.get(i));
+            writeEstimate(out, estimates.get(i));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        final int n = in.readInt();
+        keys = new ArrayList<K>(n);
+        estimates = new ArrayList<Estimate>(n);
+        for (int i = 0; i < n; i++) {
+            keys.add((K) in.readObject());
+            estimates.add(readEstimate(in));
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder s = new StringBuilder("[");
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) {
+                s.append(", ");
+            }
+            s.append(keys.get(i));
+            s.append('=');
+            s.append(estimates.get(i));
+        }
+        s.append(']');
+        return s.toString();
+    }
+}
@@ -0,0 +1,342 @@
+package ibis.steel;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.DoubleStream;
+
+/**
+ * Factories of collectors that build estimators from streams of samples.
+ * The collectors accumulate every part of a stream separately, and combine
+ * the parts exactly, so that they can be used on parallel streams. The
+ * resulting estimator is equivalent to one that was constructed with the same
+ * initial parameters and received all samples in the order of the stream,
+ * apart from differences in rounding.
+ * <p>
+ * For the decaying estimators the order of the samples matters, so their
+ * collectors must be used on ordered streams. The combination is still exact,
+ * since the decay of a part only depends on the number of samples that
+ * follow it.
+ */
+public class EstimatorCollectors {
+    private EstimatorCollectors() {
+        // Only static methods.
+    }
+
+    private static <R> Collector<Double, MomentAccumulator, R> collector(
+            final double alpha, final boolean logarithmic, final double mean,
+            final double variance, final Function<MomentAccumulator, R> finish) {
+        final Supplier<MomentAccumulator> supplier = () -> new MomentAccumulator(
+                alpha, logarithmic);
+        final BiConsumer<MomentAccumulator, Double> accumulator = (acc, v) -> acc
+                .accept(v);
+        final Function<MomentAccumulator, R> finisher = acc -> finish
+                .apply(withPrior(alpha, logarithmic, mean, variance, acc));
+        if (alpha == 0) {
+            // Without decay the order of the samples does not matter.
+            return Collector.of(supplier, accumulator, EstimatorCollectors::combine,
+                    finisher, Collector.Characteristics.UNORDERED);
+        }
+        return Collector.of(supplier, accumulator, EstimatorCollectors::combine,
+                finisher);
+    }
+
+    private static MomentAccumulator combine(final MomentAccumulator a,
+            final MomentAccumulator b) {
+        a.combine(b);
+        return a;
+    }
+
+    private static MomentAccumulator withPrior(final double alpha,
+            final boolean logarithmic, final double mean,
+            final double variance, final MomentAccumulator acc) {
+        final MomentAccumulator res = new MomentAccumulator(alpha,
+                logarithmic, mean, variance);
+        res.combine(acc);
+        return res;
+    }
+
+    private static MomentAccumulator collect(final DoubleStream samples,
+            final double alpha, final boolean logarithmic, final double mean,
+            final double variance) {
+        final MomentAccumulator acc = samples.collect(
+                () -> new MomentAccumulator(alpha, logarithmic),
+                MomentAccumulator::accept, MomentAccumulator::combine);
+        return withPrior(alpha, logarithmic, mean, variance, acc);
+    }
+
+    private static GaussianEstimator gaussian(final MomentAccumulator acc) {
+        return new GaussianEstimator(acc.mean, acc.getVariance(), acc.count);
+    }
+
+    private static LogGaussianEstimator logGaussian(
+            final MomentAccumulator acc) {
+        return new LogGaussianEstimator(acc.mean, acc.getVariance(), acc.count);
+    }
+
+    private static GaussianDecayingEstimator gaussianDecaying(
+            final MomentAccumulator acc, final double alpha) {
+        return new GaussianDecayingEstimator(acc.mean, acc.getVariance(),
+                alpha, acc.count);
+    }
+
+    private static LogGaussianDecayingEstimator logGaussianDecaying(
+            final MomentAccumulator acc, final double alpha) {
+        return new LogGaussianDecayingEstimator(acc.mean, acc.getVariance(),
+                alpha, acc.count);
+    }
+
+    /**
+     * Returns a collector that builds a {@link GaussianEstimator} with the
+     * given initial mean and variance from the collected samples.
+     *
+     * @param mean
+     *            The initial mean of the estimator.
+     * @param variance
+     *            The initial variance of the estimator.
+     * @return The collector.
+     */
+    public static Collector<Double, ?, GaussianEstimator> gaussian(
+            final double mean, final double variance) {
+        return collector(0, false, mean, variance,
+                EstimatorCollectors::gaussian);
+    }
+
+    /**
+     * Returns a collector that builds a {@link LogGaussianEstimator} with the
+     * given initial mean and variance of the log from the collected samples.
+     *
+     * @param logMean
+     *            The initial mean of the log.
+     * @param logVariance
+     *            The initial variance of the log.
+     * @return The collector.
+     */
+    public static Collector<Double, ?, LogGaussianEstimator> logGaussian(
+            final double logMean, final double logVariance) {
+        return collector(0, true, logMean, logVariance,
+                EstimatorCollectors::logGaussian);
+    }
+
+    /**
+     * Returns a collector that builds a {@link GaussianDecayingEstimator}
+     * with the given initial mean and variance, and the given decay factor,
+     * from the collected samples. The stream must be ordered.
+     *
+     * @param mean
+     *            The initial mean of the estimator.
+     * @param variance
+     *            The initial variance of the estimator.
+     * @param alpha
+     *            The decay factor of the estimator.
+     * @return The collector.
+     */
+    public static Collector<Double, ?, GaussianDecayingEstimator> gaussianDecaying(
+            final double mean, final double variance, final double alpha) {
+        return collector(alpha, false, mean, variance,
+                acc -> gaussianDecaying(acc, alpha));
+    }
+
+    /**
+     * Returns a collector that builds a {@link LogGaussianDecayingEstimator}
+     * with the given initial mean and variance of the log, and the given
+     * decay factor, from the collected samples. The stream must be ordered.
+     *
+     * @param logMean
+     *            The initial mean of the log.
+     * @param logVariance
+     *            The initial variance of the log.
+     * @param alpha
+     *            The decay factor of the estimator.
+     * @return The collector.
+     */
+    public static Collector<Double, ?, LogGaussianDecayingEstimator> logGaussianDecaying(
+            final double logMean, final double logVariance, final double alpha) {
+        return collector(alpha, true, logMean, logVariance,
+                acc -> logGaussianDecaying(acc, alpha));
+    }
+
+    /**
+     * Returns a {@link GaussianEstimator} with the given initial mean and
+     * variance that has received all samples of the given stream.
+     *
+     * @param samples
+     *            The samples.
+     * @param mean
+     *            The initial mean of the estimator.
+     * @param variance
+     *            The initial variance of the estimator.
+     * @return The estimator.
+     */
+    public static GaussianEstimator gaussian(final DoubleStream samples,
+            final double mean, final double variance) {
+        return gaussian(collect(samples, 0, false, mean, variance));
+    }
+
+    /**
+     * Returns a {@link LogGaussianEstimator} with the given initial mean and
+     * variance of the log that has received all samples of the given stream.
+     *
+     * @param samples
+     *            The samples.
+     * @param logMean
+     *            The initial mean of the log.
+     * @param logVariance
+     *            The initial variance of the log.
+     * @return The estimator.
+     */
+    public static LogGaussianEstimator logGaussian(final DoubleStream samples,
+            final double logMean, final double logVariance) {
+        return logGaussian(collect(samples, 0, true, logMean, logVariance));
+    }
+
+    /**
+     * Returns a {@link GaussianDecayingEstimator} with the given initial mean
+     * and variance, and the given decay factor, that has received all samples
+     * of the given ordered stream.
+     *
+     * @param samples
+     *            The samples.
+     * @param mean
+     *            The initial mean of the estimator.
+     * @param variance
+     *            The initial variance of the estimator.
+     * @param alpha
+     *            The decay factor of the estimator.
+     * @return The estimator.
+     */
+    public static GaussianDecayingEstimator gaussianDecaying(
+            final DoubleStream samples, final double mean,
+            final double variance, final double alpha) {
+        return gaussianDecaying(collect(samples, alpha, false, mean, variance),
+                alpha);
+    }
+
+    /**
+     * Returns a {@link LogGaussianDecayingEstimator} with the given initial
+     * mean and variance of the log, and the given decay factor, that has
+     * received all samples of the given ordered stream.
+     *
+     * @param samples
+     *            The samples.
+     * @param logMean
+     *            The initial mean of the log.
+     * @param logVariance
+     *            The initial variance of the log.
+     * @param alpha
+     *            The decay factor of the estimator.
+     * @return The estimator.
+     */
+    public static LogGaussianDecayingEstimator logGaussianDecaying(
+            final DoubleStream samples, final double logMean,
+            final double logVariance, final double alpha) {
+        return logGaussianDecaying(
+                collect(samples, alpha, true, logMean, logVariance), alpha);
+    }
+
+    /**
+     * Returns the largest difference in location and in spread between the
+     * two estimates, relative to the spread of the first one, or infinity if
+     * their types or sample counts differ.
+     */
+    private static double getDifference(final Estimate a, final Estimate b) {
+        final double ma;
+        final double va;
+        final double mb;
+        final double vb;
+        final int na;
+        final int nb;
+        if (a instanceof LogGaussianEstimate
+                && b instanceof LogGaussianEstimate) {
+            final LogGaussianEstimate la = (LogGaussianEstimate) a;
+            final LogGaussianEstimate lb = (LogGaussianEstimate) b;
+            ma = la.logMean;
+            va = la.logVariance;
+            na = la.sampleCount;
+            mb = lb.logMean;
+            vb = lb.logVariance;
+            nb = lb.sampleCount;
+        } else if (a instanceof GaussianEstimate
+                && b instanceof GaussianEstimate) {
+            final GaussianEstimate ga = (GaussianEstimate) a;
+            final GaussianEstimate gb = (GaussianEstimate) b;
+            ma = ga.mean;
+            va = ga.variance;
+            na = ga.sampleCount;
+            mb = gb.mean;
+            vb = gb.variance;
+            nb = gb.sampleCount;
+        } else {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (na != nb) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.max(Math.abs(ma - mb) / Math.sqrt(va), Math.abs(va - vb)
+                / va);
+    }
+
+    /**
+     * Reports the difference between an estimator that received all samples
+     * in sequence, and estimators built by a collector from a sequential and
+     * a parallel stream, and by a helper from a parallel stream. Returns the
+     * largest difference.
+     */
+    private static double check(final String name, final Estimator expected,
+            final Collector<Double, ?, ? extends Estimator> collector,
+            final Estimator helperResult, final double samples[]) {
+        for (final double v : samples) {
+            expected.addSample(v);
+        }
+        final Estimate e = expected.getEstimate();
+        final double sequential = getDifference(e,
+                Arrays.stream(samples).boxed().collect(collector)
+                        .getEstimate());
+        final double parallel = getDifference(e, Arrays.stream(samples)
+                .boxed().parallel().collect(collector).getEstimate());
+        final double helper = getDifference(e, helperResult.getEstimate());
+        System.out.println(name + ": sequential " + sequential
+                + ", parallel " + parallel + ", parallel helper " + helper);
+        return Math.max(sequential, Math.max(parallel, helper));
+    }
+
+    /**
+     * Verifies that all collectors, on sequential and on parallel streams,
+     * produce the same estimators as adding the samples in sequence, apart
+     * from differences in rounding. The differences are reported relative to
+     * the standard deviation of the estimates.
+     *
+     * @param args
+     *            Ignored.
+     */
+    public static void main(final String[] args) {
+        final Random rng = new Random(1);
+        final double samples[] = new double[1000000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = Math.exp(2 + 0.5 * rng.nextGaussian());
+        }
+        double maxDifference = 0;
+        maxDifference = Math.max(maxDifference, check("gaussian",
+                new GaussianEstimator(5, 4), gaussian(5, 4), gaussian(Arrays
+                        .stream(samples).parallel(), 5, 4), samples));
+        maxDifference = Math.max(maxDifference, check("log-gaussian",
+                new LogGaussianEstimator(1, 1), logGaussian(1, 1),
+                logGaussian(Arrays.stream(samples).parallel(), 1, 1), samples));
+        maxDifference = Math.max(maxDifference, check("gaussian-decaying",
+                new GaussianDecayingEstimator(5, 4, 0.01), gaussianDecaying(5,
+                        4, 0.01), gaussianDecaying(Arrays.stream(samples)
+                        .parallel(), 5, 4, 0.01), samples));
+        maxDifference = Math.max(maxDifference, check("log-gaussian-decaying",
+                new LogGaussianDecayingEstimator(1, 1, 0.01),
+                logGaussianDecaying(1, 1, 0.01), logGaussianDecaying(Arrays
+                        .stream(samples).parallel(), 1, 1, 0.01), samples));
+        System.out.println("max relative difference: " + maxDifference);
+        if (maxDifference > 1e-9) {
+            System.out.println("Difference too large");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ibis.steel;
+
+/**
+ * A leaf of an estimate expression graph that wraps an estimator. The leaf is
+ * itself an estimator: adding a sample to it adds the sample to the wrapped
+ * estimator, and marks all expressions that depend on this leaf as dirty.
+ */
+public class EstimatorExpression extends EstimateExpression implements
+        Estimator {
+    private final Estimator estimator;
+
+    EstimatorExpression(final Estimator estimator) {
+        this.estimator = estimator;
+    }
+
+    @Override
+    Estimate compute() {
+        return estimator.getEstimate();
+    }
+
+    /**
+     * Tells the graph that the wrapped estimator was changed without going
+     * through this leaf.
+     */
+    public void changed() {
+        markDirty();
+    }
+
+    @Override
+    public void addSample(final double v) {
+        estimator.addSample(v);
+        markDirty();
+    }
+
+    @Override
+    public double getLikelyValue() {
+        return estimator.getLikelyValue();
+    }
+
+    @Override
+    public String getName() {
+        return estimator.getName();
+    }
+
+    @Override
+    public double getHighEstimate() {
+        return estimator.getHighEstimate();
+    }
+
+    @Override
+    public int getSampleCount() {
+        return estimator.getSampleCount();
+    }
+
+    @Override
+    public String getStatisticsString() {
+        return estimator.getStatisticsString();
+    }
+
+    @Override
+    public String format() {
+        return estimator.format();
+    }
+
+    @Override
+    public String toString() {
+        return estimator.format();
+    }
+}
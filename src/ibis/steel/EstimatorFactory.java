@@ -0,0 +1,19 @@
+package ibis.steel;
+
+/**
+ * The interface of a factory of estimators. Tools that need a new estimator
+ * for every key they encounter, such as the {@link TraceEvaluator}, use a
+ * factory to create them.
+ */
+public interface EstimatorFactory {
+    /**
+     * Returns a new estimator, given the first sample for it. The factory
+     * can use the sample to choose the initial parameters of the estimator.
+     * The sample itself is not added to the estimator.
+     *
+     * @param firstSample
+     *            The first sample of the estimator.
+     * @return The new estimator.
+     */
+    Estimator newEstimator(double firstSample);
+}
@@ -0,0 +1,197 @@
+package ibis.steel;
+
+/**
+ * A pool of related estimators that share their samples to provide a prior
+ * for new estimators. For example, a pool can represent all nodes that
+ * execute a particular task type, and the estimators in the pool the
+ * individual nodes. A new estimator starts with the pooled distribution as
+ * its prior, and gradually shifts to its own samples as they arrive. Every
+ * sample added to an estimator of the pool also updates the pool.
+ * <p>
+ * Pools can be nested: a pool can itself have a parent pool that provides its
+ * prior, for example all task types of a particular application. Samples are
+ * propagated to all ancestor pools.
+ * <p>
+ * A pool either models the samples with a Gaussian distribution, or with a
+ * log-Gaussian distribution, in which case all statistics are maintained on
+ * the logarithm of the samples.
+ */
+public class EstimatorPool {
+    /** The prior weight of a new estimator, in samples. */
+    static final double DEFAULT_PRIOR_WEIGHT = 3.0;
+
+    private final EstimatorPool parent;
+    private final double priorMean;
+    private final double priorVariance;
+    private final double priorWeight;
+    final boolean logarithmic;
+    private int sampleCount = 0;
+    private double mean = 0.0;
+    private double S = 0.0;
+
+    private EstimatorPool(final EstimatorPool parent, final double priorMean,
+            final double priorVariance, final double priorWeight,
+            final boolean logarithmic) {
+        if (priorWeight <= 0 || Double.isNaN(priorWeight)) {
+            throw new IllegalArgumentException("Bad prior weight: "
+                    + priorWeight);
+        }
+        this.parent = parent;
+        this.priorMean = priorMean;
+        this.priorVariance = priorVariance;
+        this.priorWeight = priorWeight;
+        this.logarithmic = logarithmic;
+    }
+
+    /**
+     * Constructs a new top-level pool with the given prior. For a
+     * log-Gaussian pool the mean and variance are those of the log of the
+     * samples.
+     *
+     * @param mean
+     *            The initial mean of the pool.
+     * @param variance
+     *            The initial variance of the pool.
+     * @param logarithmic
+     *            If <code>true</code>, use a log-Gaussian model, otherwise use a
+     *            Gaussian model.
+     */
+    public EstimatorPool(final double mean, final double variance,
+            final boolean logarithmic) {
+        this(null, mean, variance, 1.0, logarithmic);
+    }
+
+    /**
+     * Constructs a new pool that derives its prior from the given parent
+     * pool.
+     *
+     * @param parent
+     *            The parent pool.
+     * @param priorWeight
+     *            The weight of the prior from the parent, in samples.
+     */
+    public EstimatorPool(final EstimatorPool parent, final double priorWeight) {
+        this(parent, 0.0, 0.0, priorWeight, parent.logarithmic);
+    }
+
+    /**
+     * Returns a new estimator that derives its prior from this pool, with the
+     * given weight of the prior.
+     *
+     * @param weight
+     *            The weight of the prior, in samples.
+     * @return The new estimator.
+     */
+    public PooledEstimator newEstimator(final double weight) {
+        return new PooledEstimator(this, weight);
+    }
+
+    /**
+     * Returns a new estimator that derives its prior from this pool. The
+     * prior has the weight of three samples.
+     *
+     * @return The new estimator.
+     */
+    public PooledEstimator newEstimator() {
+        return newEstimator(DEFAULT_PRIOR_WEIGHT);
+    }
+
+    /**
+     * Adds a sample to this pool and all its ancestors. For log-Gaussian
+     * pools the sample must already be a logarithm.
+     */
+    void addValue(final double x) {
+        sampleCount++;
+        final double oldMean = mean;
+        mean += (x - mean) / sampleCount;
+        S += (x - oldMean) * (x - mean);
+        if (parent != null) {
+            parent.addValue(x);
+        }
+    }
+
+    /**
+     * Returns a number that changes whenever a sample is added to this pool or
+     * one of its ancestors, and thus whenever the prior that this pool
+     * provides may have changed.
+     */
+    long getVersion() {
+        final long v = sampleCount;
+        return parent == null ? v : v + parent.getVersion();
+    }
+
+    /**
+     * Given a prior with the given mean, variance and weight, and a sample set
+     * with the given count, mean and sum of squared differences, returns the
+     * mean of the combination.
+     */
+    static double combineMean(final double pm, final double pw, final int n,
+            final double m) {
+        return (pw * pm + n * m) / (pw + n);
+    }
+
+    /**
+     * Returns the variance of the combination of a prior and a sample set.
+     * The variance of the combination includes the spread between the mean
+     * of the prior and the mean of the samples.
+     */
+    static double combineVariance(final double pm, final double pv,
+            final double pw, final int n, final double m, final double S,
+            final double cm) {
+        final double dp = pm - cm;
+        final double dm = m - cm;
+        return (pw * (pv + dp * dp) + S + n * dm * dm) / (pw + n);
+    }
+
+    /**
+     * Returns the mean of this pool, including its prior.
+     */
+    double getMean() {
+        final double pm = parent == null ? priorMean : parent.getMean();
+        return combineMean(pm, priorWeight, sampleCount, mean);
+    }
+
+    /**
+     * Returns the variance of this pool, including its prior.
+     */
+    double getVariance() {
+        final double pm;
+        final double pv;
+        if (parent == null) {
+            pm = priorMean;
+            pv = priorVariance;
+        } else {
+            pm = parent.getMean();
+            pv = parent.getVariance();
+        }
+        final double cm = combineMean(pm, priorWeight, sampleCount, mean);
+        return combineVariance(pm, pv, priorWeight, sampleCount, mean, S, cm);
+    }
+
+    /**
+     * Returns the number of samples that were added to this pool.
+     *
+     * @return The sample count.
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Returns an estimate of the pooled distribution.
+     *
+     * @return The estimate.
+     */
+    public Estimate getEstimate() {
+        if (logarithmic) {
+            return new LogGaussianEstimate(getMean(), getVariance(),
+                    sampleCount + 1);
+        }
+        return new GaussianEstimate(getMean(), getVariance(), sampleCount + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "pool " + getEstimate() + " samples=" + sampleCount;
+    }
+}
@@ -0,0 +1,127 @@
+package ibis.steel;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A stopwatch that adds the measured durations as samples to an estimator.
+ * The timer is reusable and does not allocate any objects, and it can be used
+ * as a resource in a <code>try</code> statement:
+ *
+ * <pre>
+ * try (EstimatorTimer t = timer.start()) {
+ *     // The code to measure.
+ * }
+ * </pre>
+ *
+ * Durations are converted to the given time unit before they are added to the
+ * estimator. Durations are at least one nanosecond, so that they are always
+ * accepted by log-Gaussian estimators. Optionally, only one in every
+ * <em>n</em> measurements is actually timed.
+ * <p>
+ * A timer can only time one region at a time, and is not thread-safe. Use a
+ * {@link BatchingEstimatorTimer} to time code that is executed by multiple
+ * threads.
+ */
+public class EstimatorTimer implements Closeable {
+    private final Estimator estimator;
+    private final double scale;
+    private final int interval;
+    private int countdown = 0;
+    private boolean running = false;
+    private long startTime;
+
+    /**
+     * Constructs a new timer that times one in every <code>interval</code>
+     * measurements.
+     *
+     * @param estimator
+     *            The estimator to add the durations to.
+     * @param unit
+     *            The time unit of the samples.
+     * @param interval
+     *            The number of measurements per timed measurement.
+     */
+    public EstimatorTimer(final Estimator estimator, final TimeUnit unit,
+            final int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Bad sampling interval: "
+                    + interval);
+        }
+        this.estimator = estimator;
+        this.scale = getScale(unit);
+        this.interval = interval;
+    }
+
+    /**
+     * Constructs a new timer that times every measurement.
+     *
+     * @param estimator
+     *            The estimator to add the durations to.
+     * @param unit
+     *            The time unit of the samples.
+     */
+    public EstimatorTimer(final Estimator estimator, final TimeUnit unit) {
+        this(estimator, unit, 1);
+    }
+
+    /**
+     * Returns the factor to convert nanoseconds to the given unit.
+     */
+    static double getScale(final TimeUnit unit) {
+        return 1.0 / unit.toNanos(1);
+    }
+
+    /**
+     * Starts a measurement. If the measurement is skipped because of
+     * sampling, the matching {@link #stop()} does nothing.
+     *
+     * @return This timer.
+     */
+    public EstimatorTimer start() {
+        if (--countdown <= 0) {
+            countdown = interval;
+            running = true;
+            startTime = System.nanoTime();
+        }
+        return this;
+    }
+
+    /**
+     * Stops the current measurement, and adds its duration to the estimator.
+     */
+    public void stop() {
+        if (running) {
+            final long duration = System.nanoTime() - startTime;
+            running = false;
+            addDuration(duration);
+        }
+    }
+
+    /**
+     * Adds the given duration to the estimator.
+     *
+     * @param nanos
+     *            The duration in nanoseconds.
+     */
+    public void addDuration(final long nanos) {
+        estimator.addSample(Math.max(nanos, 1L) * scale);
+    }
+
+    /**
+     * Stops the current measurement. Equivalent to {@link #stop()}.
+     */
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * Returns the estimator of this timer.
+     *
+     * @return The estimator.
+     */
+    public Estimator getEstimator() {
+        return estimator;
+    }
+}
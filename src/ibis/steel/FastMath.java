@@ -0,0 +1,209 @@
+package ibis.steel;
+
+/**
+ * Table-based approximations of <code>log</code> and <code>exp</code> for the
+ * log-Gaussian estimators and estimates. The approximations are only used if
+ * the system property <code>ibis.steel.fastmath</code> is set to
+ * <code>true</code>; otherwise {@link #log(double)} and {@link #exp(double)}
+ * simply call their counterparts in {@link Math}.
+ * <p>
+ * Error bounds, as verified by {@link #main(String[])}:
+ * <ul>
+ * <li>{@link #fastLog(double)} has an error below
+ * <code>1e-15*max(1,|log(x)|)</code> for all positive normal arguments. That
+ * is, the absolute error is below 1e-15 for arguments between 1/<em>e</em>
+ * and <em>e</em>, and the relative error is below 1e-15 elsewhere. Since an
+ * absolute error in a logarithm is a relative error in the value, the error
+ * in the log-Gaussian models is negligible compared to the statistical
+ * error.</li>
+ * <li>{@link #fastExp(double)} has a relative error below 2e-15 for all
+ * arguments.</li>
+ * </ul>
+ * Arguments outside the range of the tables (zero, negative, subnormal,
+ * infinite and NaN arguments for <code>log</code>, and arguments that
+ * overflow or underflow for <code>exp</code>) are handled by the exact
+ * versions.
+ */
+class FastMath {
+    static final boolean ENABLED = Boolean.getBoolean("ibis.steel.fastmath");
+
+    private static final int TABLE_BITS = 10;
+    private static final int TABLE_SIZE = 1 << TABLE_BITS;
+
+    private static final double LN2 = Math.log(2);
+
+    /** The difference between ln(2) and its double representation LN2. */
+    private static final double LN2_LO = 2.319046813846299558e-17;
+
+    /** log(1+i/TABLE_SIZE) */
+    private static final double LOG_TABLE[] = new double[TABLE_SIZE];
+
+    /** 1/(1+i/TABLE_SIZE) */
+    private static final double INV_TABLE[] = new double[TABLE_SIZE];
+
+    /** The bits of 2^(i/TABLE_SIZE) */
+    private static final long EXP2_TABLE[] = new long[TABLE_SIZE];
+
+    private static final double ROUND_SHIFT = 1.5 * (1L << 52);
+
+    private static final double EXP_SCALE = TABLE_SIZE / LN2;
+
+    // ln(2)/TABLE_SIZE, split in a part with a short mantissa, so that
+    // multiplications with it are exact, and the remainder.
+    private static final double LN2_STEP_HI = Double.longBitsToDouble(Double
+            .doubleToRawLongBits(LN2 / TABLE_SIZE) & 0xFFFFFFFFF0000000L);
+    private static final double LN2_STEP_LO = (LN2 / TABLE_SIZE - LN2_STEP_HI)
+            + LN2_LO / TABLE_SIZE;
+
+    private static final long MANTISSA_MASK = 0x000FFFFFFFFFFFFFL;
+    private static final long ONE_BITS = 0x3FF0000000000000L;
+
+    static {
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            final double c = 1.0 + (double) i / TABLE_SIZE;
+            LOG_TABLE[i] = Math.log(c);
+            INV_TABLE[i] = 1.0 / c;
+            EXP2_TABLE[i] = Double.doubleToRawLongBits(Math.pow(2.0,
+                    (double) i / TABLE_SIZE));
+        }
+    }
+
+    /**
+     * Returns the natural logarithm of <code>x</code>, approximated if fast
+     * math is enabled.
+     */
+    static double log(final double x) {
+        return ENABLED ? fastLog(x) : Math.log(x);
+    }
+
+    /**
+     * Returns <em>e</em> raised to the power <code>x</code>, approximated if
+     * fast math is enabled.
+     */
+    static double exp(final double x) {
+        return ENABLED ? fastExp(x) : Math.exp(x);
+    }
+
+    /**
+     * Returns an approximation of the natural logarithm of <code>x</code>.
+     * The argument is split in a power of two and a mantissa
+     * <code>m</code> in [1,2). The mantissa is divided by the nearest lower
+     * table entry <code>c</code>, and the logarithm of the remaining factor
+     * <code>1+r</code>, with <code>0 &lt;= r &lt; 1/1024</code>, is computed
+     * with a fourth-order Taylor polynomial.
+     */
+    static double fastLog(final double x) {
+        final long bits = Double.doubleToRawLongBits(x);
+        final int biasedExponent = (int) (bits >>> 52);
+        if (biasedExponent <= 0 || biasedExponent >= 0x7FF) {
+            // Zero, subnormal, negative, infinite or NaN.
+            return Math.log(x);
+        }
+        final long mantissa = bits & MANTISSA_MASK;
+        final int i = (int) (mantissa >>> (52 - TABLE_BITS));
+        final double m = Double.longBitsToDouble(mantissa | ONE_BITS);
+        final double r = m * INV_TABLE[i] - 1.0;
+        final double r2 = r * r;
+        final double p = r + r2 * (-1.0 / 2 + r * (1.0 / 3)) + r2 * r2
+                * (-1.0 / 4);
+        final int e = biasedExponent - 1023;
+        return e * LN2 + (LOG_TABLE[i] + (p + e * LN2_LO));
+    }
+
+    /**
+     * Returns an approximation of <em>e</em> raised to the power
+     * <code>x</code>. The argument is written as
+     * <code>n*ln(2)/1024 + r</code>, with <code>|r| &lt;= ln(2)/2048</code>, so
+     * that the result is a power of two, times an entry from the table, times
+     * <em>e</em> raised to the power <code>r</code>, which is computed with a
+     * third-order Taylor polynomial.
+     */
+    static double fastExp(final double x) {
+        if (!(x > -708 && x < 709)) {
+            // Underflow, overflow, or NaN.
+            return Math.exp(x);
+        }
+        // Adding ROUND_SHIFT rounds to an integer that ends up in the low
+        // bits of the mantissa.
+        final double t = x * EXP_SCALE + ROUND_SHIFT;
+        final int n = (int) Double.doubleToRawLongBits(t);
+        final double nd = t - ROUND_SHIFT;
+        final double r = (x - nd * LN2_STEP_HI) - nd * LN2_STEP_LO;
+        final double p = 1.0 + r + r * r * (1.0 / 2 + r * (1.0 / 6));
+        // Multiply the table entry by 2^k by adding k to its exponent.
+        final long k = n >> TABLE_BITS;
+        return Double.longBitsToDouble(EXP2_TABLE[n & (TABLE_SIZE - 1)]
+                + (k << 52))
+                * p;
+    }
+
+    private static double maxLogError = 0;
+    private static double maxExpError = 0;
+
+    private static void testLog(final double x) {
+        final double exact = Math.log(x);
+        final double err = Math.abs(fastLog(x) - exact)
+                / Math.max(1, Math.abs(exact));
+        if (err > maxLogError) {
+            maxLogError = err;
+        }
+    }
+
+    private static void testExp(final double x) {
+        final double exact = Math.exp(x);
+        final double err = Math.abs(fastExp(x) - exact) / exact;
+        if (err > maxExpError) {
+            maxExpError = err;
+        }
+    }
+
+    private static double benchmark(final boolean fast, final int n) {
+        double sum = 0;
+        double v = 1.5;
+        final long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            final double l = fast ? fastLog(v) : Math.log(v);
+            sum += fast ? fastExp(l) : Math.exp(l);
+            v += 0.25;
+        }
+        final long time = System.nanoTime() - start;
+        if (sum == 0) {
+            System.out.println("Impossible sum " + sum);
+        }
+        return (double) time / n;
+    }
+
+    /**
+     * Verifies the error bounds of the approximations against
+     * {@link Math#log(double)} and {@link Math#exp(double)}, and compares
+     * their speed.
+     *
+     * @param args
+     *            Ignored.
+     */
+    public static void main(final String[] args) {
+        final java.util.Random rng = new java.util.Random(1);
+        for (int i = 0; i < 10000000; i++) {
+            testLog(Math.exp(1400 * rng.nextDouble() - 700));
+            testLog(1 + 1e-3 * rng.nextGaussian());
+            testExp(1416 * rng.nextDouble() - 708);
+            testExp(rng.nextGaussian());
+        }
+        testLog(Double.MIN_NORMAL);
+        testLog(Double.MAX_VALUE);
+        testLog(1.0);
+        testExp(0.0);
+        System.out.println("max scaled error of fastLog: " + maxLogError);
+        System.out.println("max relative error of fastExp: " + maxExpError);
+        if (maxLogError > 1e-15 || maxExpError > 2e-15) {
+            System.out.println("Error bound exceeded");
+            System.exit(1);
+        }
+        for (int round = 0; round < 5; round++) {
+            final double exact = benchmark(false, 20000000);
+            final double fast = benchmark(true, 20000000);
+            System.out.println(String.format(
+                    "log+exp: exact %.2f ns, fast %.2f ns", exact, fast));
+        }
+    }
+}
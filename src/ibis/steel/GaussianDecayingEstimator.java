@@ -9,14 +9,14 @@ package ibis.steel;
  * 
  * @author Kees van Reeuwijk
  */
-public class GaussianDecayingEstimator implements Estimator {
+public class GaussianDecayingEstimator implements CensoredEstimator {
     private static final long serialVersionUID = 1L;
     private double mean = 0.0;
     private double variance = 0.0;
     private final double alpha;
     private int sampleCount = 0;
 
-    private GaussianDecayingEstimator(final double mean, final double variance,
+    GaussianDecayingEstimator(final double mean, final double variance,
             final double alpha, final int sampleCount) {
         this.mean = mean;
         this.variance = variance;
@@ -93,6 +93,21 @@ public class GaussianDecayingEstimator implements Estimator {
         sampleCount++;
     }
 
+    @Override
+    public void addCensoredSample(final double lowerBound) {
+        if (Double.isInfinite(lowerBound) || Double.isNaN(lowerBound)) {
+            throw new IllegalArgumentException("Bad lower bound: "
+                    + lowerBound);
+        }
+        final double stdDev = Math.sqrt(variance);
+        if (stdDev == 0) {
+            addSample(Math.max(mean, lowerBound));
+        } else {
+            final double z = (lowerBound - mean) / stdDev;
+            addSample(mean + stdDev * NormalDistribution.millsRatio(z));
+        }
+    }
+
     @Override
     public double getHighEstimate() {
         return mean + Math.sqrt(variance);
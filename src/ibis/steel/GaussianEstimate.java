@@ -54,6 +54,18 @@ public class GaussianEstimate implements Estimate {
         return new GaussianEstimate(c * mean, c * c * variance, sampleCount);
     }
 
+    @Override
+    public Estimate sumIndependent(final int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Negative count: k=" + k);
+        }
+        if (k == 0) {
+            return ConstantEstimate.ZERO;
+        }
+        // The means and the variances of independent values simply add up.
+        return new GaussianEstimate(k * mean, k * variance, sampleCount);
+    }
+
     @Override
     public String toString() {
         return Utils.formatNumber(mean) + "+-"
@@ -76,4 +88,31 @@ public class GaussianEstimate implements Estimate {
     public double getHighEstimate() {
         return mean + Math.sqrt(variance);
     }
+
+    @Override
+    public double getExpectedRemaining(final double elapsed) {
+        final double stdDev = Math.sqrt(variance);
+        if (stdDev == 0) {
+            return Math.max(mean - elapsed, 0);
+        }
+        // E[X|X>t] = mean + stdDev*millsRatio(z), so the remainder is
+        // stdDev*(millsRatio(z)-z).
+        final double z = (elapsed - mean) / stdDev;
+        return stdDev * NormalDistribution.millsExcess(z);
+    }
+
+    @Override
+    public double getExceedanceProbability(final double elapsed,
+            final double deadline) {
+        if (deadline <= elapsed) {
+            return 1;
+        }
+        final double stdDev = Math.sqrt(variance);
+        if (stdDev == 0) {
+            return deadline < mean ? 1 : 0;
+        }
+        final double zt = (elapsed - mean) / stdDev;
+        final double zd = (deadline - mean) / stdDev;
+        return NormalDistribution.upperTailRatio(zd, zt);
+    }
 }
@@ -6,7 +6,7 @@ package ibis.steel;
  * @author Kees van Reeuwijk
  * 
  */
-public class GaussianEstimator implements Estimator {
+public class GaussianEstimator implements CensoredEstimator {
     /**
      * 
      */
@@ -15,7 +15,7 @@ public class GaussianEstimator implements Estimator {
     private double S = 0.0;
     private int sampleCount = 0;
 
-    private GaussianEstimator(final double mean, final double variance,
+    GaussianEstimator(final double mean, final double variance,
             final int sampleCount) {
         this.mean = mean;
         S = variance * sampleCount;
@@ -42,6 +42,21 @@ public class GaussianEstimator implements Estimator {
         S += (value - oldMean) * (value - mean);
     }
 
+    @Override
+    public void addCensoredSample(final double lowerBound) {
+        if (Double.isInfinite(lowerBound) || Double.isNaN(lowerBound)) {
+            throw new IllegalArgumentException("Bad lower bound: "
+                    + lowerBound);
+        }
+        final double stdDev = getStdDev();
+        if (stdDev == 0) {
+            addSample(Math.max(mean, lowerBound));
+        } else {
+            final double z = (lowerBound - mean) / stdDev;
+            addSample(mean + stdDev * NormalDistribution.millsRatio(z));
+        }
+    }
+
     private double getStdDev() {
         return Math.sqrt(S / sampleCount);
     }
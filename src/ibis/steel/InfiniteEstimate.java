@@ -39,6 +39,17 @@ public class InfiniteEstimate implements Estimate {
         return this;
     }
 
+    @Override
+    public Estimate sumIndependent(final int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Negative count: k=" + k);
+        }
+        if (k == 0) {
+            return ConstantEstimate.ZERO;
+        }
+        return this;
+    }
+
     @Override
     public double getLikelyValue() {
         return Double.POSITIVE_INFINITY;
@@ -49,6 +60,17 @@ public class InfiniteEstimate implements Estimate {
         return Double.POSITIVE_INFINITY;
     }
 
+    @Override
+    public double getExpectedRemaining(final double elapsed) {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public double getExceedanceProbability(final double elapsed,
+            final double deadline) {
+        return 1;
+    }
+
     @Override
     public String toString() {
         return "infinite";
@@ -9,14 +9,14 @@ package ibis.steel;
  * 
  * @author Kees van Reeuwijk
  */
-public class LogGaussianDecayingEstimator implements Estimator {
+public class LogGaussianDecayingEstimator implements CensoredEstimator {
     private static final long serialVersionUID = 1L;
     private double logMean;
     private double logVariance;
     private final double alpha;
     private int sampleCount = 0;
 
-    private LogGaussianDecayingEstimator(final double logMean,
+    LogGaussianDecayingEstimator(final double logMean,
             final double logVariance, final double alpha, final int sampleCount) {
         this.logMean = logMean;
         this.logVariance = logVariance;
@@ -58,13 +58,13 @@ public class LogGaussianDecayingEstimator implements Estimator {
         this.alpha = alpha;
         if (est instanceof ConstantEstimate) {
             final ConstantEstimate cest = (ConstantEstimate) est;
-            logMean = Math.log(cest.v);
-            logVariance = Math.log(10);
+            logMean = FastMath.log(cest.v);
+            logVariance = FastMath.log(10);
             sampleCount = 1;
         } else if (est instanceof GaussianEstimate) {
             final GaussianEstimate gest = (GaussianEstimate) est;
-            logMean = Math.log(gest.mean);
-            logVariance = Math.log(gest.variance);
+            logMean = FastMath.log(gest.mean);
+            logVariance = FastMath.log(gest.variance);
             sampleCount = gest.sampleCount;
         } else if (est instanceof LogGaussianEstimate) {
             final LogGaussianEstimate gest = (LogGaussianEstimate) est;
@@ -89,7 +89,10 @@ public class LogGaussianDecayingEstimator implements Estimator {
         if (v <= 0 || Double.isInfinite(v)) {
             throw new IllegalArgumentException("Bad sample: v=" + v);
         }
-        final double x = Math.log(v);
+        addLogSample(FastMath.log(v));
+    }
+
+    private void addLogSample(final double x) {
         final double diff = x - logMean;
         final double incr = alpha * diff;
         logMean += incr;
@@ -98,15 +101,33 @@ public class LogGaussianDecayingEstimator implements Estimator {
         if (Double.isNaN(logMean) || Double.isNaN(logVariance)
                 || logMean < -Globals.MAX_LOG || logVariance < -Globals.MAX_LOG
                 || logMean > Globals.MAX_LOG || logVariance > Globals.MAX_LOG) {
-            throw new IllegalArgumentException("Bad sample: v=" + v
+            throw new IllegalArgumentException("Bad log sample: x=" + x
                     + " logMean=" + logMean + " logVariance=" + logVariance
                     + " incr=" + incr);
         }
     }
 
+    @Override
+    public void addCensoredSample(final double lowerBound) {
+        if (Double.isInfinite(lowerBound) || Double.isNaN(lowerBound)) {
+            throw new IllegalArgumentException("Bad lower bound: "
+                    + lowerBound);
+        }
+        final double stdDev = Math.sqrt(logVariance);
+        if (lowerBound <= 0) {
+            // Every sample is larger than this; we only know it's a sample.
+            addLogSample(logMean);
+        } else if (stdDev == 0) {
+            addLogSample(Math.max(logMean, FastMath.log(lowerBound)));
+        } else {
+            final double z = (FastMath.log(lowerBound) - logMean) / stdDev;
+            addLogSample(logMean + stdDev * NormalDistribution.millsRatio(z));
+        }
+    }
+
     @Override
     public double getHighEstimate() {
-        return Math.exp(logMean) + Math.exp(0.5 * logVariance);
+        return FastMath.exp(logMean) + FastMath.exp(0.5 * logVariance);
     }
 
     // FIXME: this is just an intuitive approximation of a likely values comp.
@@ -121,7 +142,7 @@ public class LogGaussianDecayingEstimator implements Estimator {
     @Override
     public double getLikelyValue() {
         final double err = getLikelyError();
-        return Math.exp(getLikelyValue(logMean, err));
+        return FastMath.exp(getLikelyValue(logMean, err));
     }
 
     @Override
@@ -147,17 +168,17 @@ public class LogGaussianDecayingEstimator implements Estimator {
     @Override
     public String getStatisticsString() {
         final double stdDev = Math.sqrt(logVariance);
-        final double rangeMin = Math.exp(logMean - stdDev);
-        final double rangeMax = Math.exp(logMean + stdDev);
-        return "mean=" + Utils.formatNumber(Math.exp(logMean)) + " range="
+        final double rangeMin = FastMath.exp(logMean - stdDev);
+        final double rangeMax = FastMath.exp(logMean + stdDev);
+        return "mean=" + Utils.formatNumber(FastMath.exp(logMean)) + " range="
                 + Utils.formatNumber(rangeMin) + "..."
                 + Utils.formatNumber(rangeMax) + " samples=" + sampleCount;
     }
 
     @Override
     public String format() {
-        return Utils.formatNumber(Math.exp(logMean)) + "~"
-                + Utils.formatNumber(Math.exp(0.5 * logVariance));
+        return Utils.formatNumber(FastMath.exp(logMean)) + "~"
+                + Utils.formatNumber(FastMath.exp(0.5 * logVariance));
     }
 
 }
@@ -44,16 +44,17 @@ public class LogGaussianEstimate implements Estimate {
         }
         if (est instanceof ConstantEstimate) {
             final ConstantEstimate ce = (ConstantEstimate) est;
-            final double av = ce.v + Math.exp(logMean);
-            return new LogGaussianEstimate(Math.log(av), logVariance,
+            final double av = ce.v + FastMath.exp(logMean);
+            return new LogGaussianEstimate(FastMath.log(av), logVariance,
                     sampleCount);
         }
         if (est instanceof LogGaussianEstimate) {
             final LogGaussianEstimate lest = (LogGaussianEstimate) est;
-            final double av = Math.exp(logMean) + Math.exp(lest.logMean);
-            final double var = Math.exp(logVariance)
-                    + Math.exp(lest.logVariance);
-            return new LogGaussianEstimate(Math.log(av), Math.log(var),
+            final double av = FastMath.exp(logMean)
+                    + FastMath.exp(lest.logMean);
+            final double var = FastMath.exp(logVariance)
+                    + FastMath.exp(lest.logVariance);
+            return new LogGaussianEstimate(FastMath.log(av), FastMath.log(var),
                     Math.min(sampleCount, lest.sampleCount));
         }
         throw new IllegalArgumentException("LogGaussianEstimate: cannot add a "
@@ -68,14 +69,34 @@ public class LogGaussianEstimate implements Estimate {
         if (c == 0) {
             return ConstantEstimate.ZERO;
         }
-        final double lc = Math.log(c);
+        final double lc = FastMath.log(c);
         return new LogGaussianEstimate(lc + logMean, logVariance, sampleCount);
     }
 
+    @Override
+    public Estimate sumIndependent(final int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Negative count: k=" + k);
+        }
+        if (k == 0) {
+            return ConstantEstimate.ZERO;
+        }
+        if (k == 1) {
+            return this;
+        }
+        // Fenton-Wilkinson approximation: use the log-Gaussian distribution
+        // that has the same mean and variance as the sum, that is, k times
+        // the mean and the variance of a single value.
+        final double sumLogVariance = Math.log1p(Math.expm1(logVariance) / k);
+        final double sumLogMean = FastMath.log(k) + logMean + 0.5
+                * (logVariance - sumLogVariance);
+        return new LogGaussianEstimate(sumLogMean, sumLogVariance, sampleCount);
+    }
+
     @Override
     public String toString() {
-        return String.format("%.3g*/%.3g", Math.exp(logMean),
-                Math.exp(getLogStdDev()));
+        return String.format("%.3g*/%.3g", FastMath.exp(logMean),
+                FastMath.exp(getLogStdDev()));
     }
 
     private double getLogStdDev() {
@@ -85,13 +106,51 @@ public class LogGaussianEstimate implements Estimate {
     @Override
     public double getLikelyValue() {
         final double v = logMean + getLogStdDev() * Globals.rng.nextGaussian();
-        return Math.exp(v);
+        return FastMath.exp(v);
     }
 
     @Override
     public double getHighEstimate() {
         final double stdDev = getLogStdDev();
         final double logMax = logMean + stdDev;
-        return Math.exp(logMax);
+        return FastMath.exp(logMax);
+    }
+
+    @Override
+    public double getExpectedRemaining(final double elapsed) {
+        final double stdDev = getLogStdDev();
+        if (stdDev == 0) {
+            return Math.max(FastMath.exp(logMean) - elapsed, 0);
+        }
+        final double logUnconditionalMean = logMean + 0.5 * logVariance;
+        if (elapsed <= 0) {
+            return FastMath.exp(logUnconditionalMean) - elapsed;
+        }
+        // E[X|X>t] = exp(logMean+logVariance/2) * Q(z-stdDev)/Q(z), with
+        // z=(log(t)-logMean)/stdDev and Q the upper tail of the standard
+        // normal distribution.
+        final double z = (FastMath.log(elapsed) - logMean) / stdDev;
+        final double conditionalMean = FastMath.exp(logUnconditionalMean)
+                * NormalDistribution.upperTailRatio(z - stdDev, z);
+        return Math.max(conditionalMean - elapsed, 0);
+    }
+
+    @Override
+    public double getExceedanceProbability(final double elapsed,
+            final double deadline) {
+        if (deadline <= elapsed || deadline <= 0) {
+            return 1;
+        }
+        final double stdDev = getLogStdDev();
+        final double logDeadline = FastMath.log(deadline);
+        if (stdDev == 0) {
+            return logDeadline < logMean ? 1 : 0;
+        }
+        final double zd = (logDeadline - logMean) / stdDev;
+        if (elapsed <= 0) {
+            return NormalDistribution.upperTail(zd);
+        }
+        final double zt = (FastMath.log(elapsed) - logMean) / stdDev;
+        return NormalDistribution.upperTailRatio(zd, zt);
     }
 }
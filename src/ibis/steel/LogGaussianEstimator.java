@@ -9,13 +9,13 @@ package ibis.steel;
  * @author Kees van Reeuwijk
  * 
  */
-public class LogGaussianEstimator implements Estimator {
+public class LogGaussianEstimator implements CensoredEstimator {
     private static final long serialVersionUID = 1L;
     private double logMean = 0.0;
     private double logS = 0.0;
     private int sampleCount = 0;
 
-    private LogGaussianEstimator(final double logMean,
+    LogGaussianEstimator(final double logMean,
             final double logVariance, final int sampleCount) {
         if (Double.isInfinite(logMean) || Double.isNaN(logMean)
                 || Double.isInfinite(logVariance) || Double.isNaN(logVariance)
@@ -48,7 +48,7 @@ public class LogGaussianEstimator implements Estimator {
     @Override
     public double getLikelyValue() {
         final double v = logMean + getLogStdDev() * Globals.rng.nextGaussian();
-        return Math.exp(v);
+        return FastMath.exp(v);
     }
 
     @Override
@@ -56,13 +56,34 @@ public class LogGaussianEstimator implements Estimator {
         if (v <= 0 || Double.isInfinite(v)) {
             throw new IllegalArgumentException("Bad sample: v=" + v);
         }
-        final double value = Math.log(v);
+        addLogSample(FastMath.log(v));
+    }
+
+    private void addLogSample(final double value) {
         sampleCount++;
         final double oldMean = logMean;
         logMean += (value - logMean) / sampleCount;
         logS += (value - oldMean) * (value - logMean);
     }
 
+    @Override
+    public void addCensoredSample(final double lowerBound) {
+        if (Double.isInfinite(lowerBound) || Double.isNaN(lowerBound)) {
+            throw new IllegalArgumentException("Bad lower bound: "
+                    + lowerBound);
+        }
+        final double stdDev = getLogStdDev();
+        if (lowerBound <= 0) {
+            // Every sample is larger than this; we only know it's a sample.
+            addLogSample(logMean);
+        } else if (stdDev == 0) {
+            addLogSample(Math.max(logMean, FastMath.log(lowerBound)));
+        } else {
+            final double z = (FastMath.log(lowerBound) - logMean) / stdDev;
+            addLogSample(logMean + stdDev * NormalDistribution.millsRatio(z));
+        }
+    }
+
     @Override
     public String getName() {
         return "log-gaussian";
@@ -72,7 +93,7 @@ public class LogGaussianEstimator implements Estimator {
     public double getHighEstimate() {
         final double stdDev = getLogStdDev();
         final double logMax = logMean + stdDev;
-        return Math.exp(logMax);
+        return FastMath.exp(logMax);
     }
 
     @Override
@@ -83,9 +104,9 @@ public class LogGaussianEstimator implements Estimator {
     @Override
     public String getStatisticsString() {
         final double stdDev = getLogStdDev();
-        final double rangeMin = Math.exp(logMean - stdDev);
-        final double rangeMax = Math.exp(logMean + stdDev);
-        return "mean=" + Utils.formatNumber(Math.exp(logMean)) + " range="
+        final double rangeMin = FastMath.exp(logMean - stdDev);
+        final double rangeMax = FastMath.exp(logMean + stdDev);
+        return "mean=" + Utils.formatNumber(FastMath.exp(logMean)) + " range="
                 + Utils.formatNumber(rangeMin) + "..."
                 + Utils.formatNumber(rangeMax) + " samples=" + sampleCount;
     }
@@ -97,8 +118,8 @@ public class LogGaussianEstimator implements Estimator {
 
     @Override
     public String format() {
-        return Utils.formatNumber(Math.exp(logMean)) + "~"
-                + Utils.formatNumber(Math.exp(0.5 * logS / sampleCount));
+        return Utils.formatNumber(FastMath.exp(logMean)) + "~"
+                + Utils.formatNumber(FastMath.exp(0.5 * logS / sampleCount));
     }
 
 }
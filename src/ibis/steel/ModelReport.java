@@ -0,0 +1,148 @@
+package ibis.steel;
+
+/**
+ * The results of replaying a trace through one estimator model, as produced
+ * by a {@link TraceEvaluator}. Every sample of a key, except the first one, is
+ * first predicted by the estimator of that key, and then added to it. The
+ * report contains the prediction errors and the cost of adding the samples
+ * to the estimator.
+ */
+public class ModelReport {
+    private final String name;
+    final PredictionTracker tracker = new PredictionTracker();
+    long samples = 0;
+    long rejected = 0;
+    long nanos = 0;
+    long allocatedBytes = 0;
+    boolean allocationKnown = true;
+
+    ModelReport(final String name) {
+        this.name = name;
+    }
+
+    void merge(final ModelReport r) {
+        tracker.merge(r.tracker);
+        samples += r.samples;
+        rejected += r.rejected;
+        nanos += r.nanos;
+        allocatedBytes += r.allocatedBytes;
+        allocationKnown &= r.allocationKnown;
+    }
+
+    /**
+     * Returns the name of the model.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of predictions that were evaluated.
+     *
+     * @return The number of predictions.
+     */
+    public long getPredictionCount() {
+        return tracker.getCount();
+    }
+
+    /**
+     * Returns the number of samples that the model rejected, because its
+     * factory or its estimator threw an exception. These samples are not
+     * included in the prediction statistics.
+     *
+     * @return The number of rejected samples.
+     */
+    public long getRejectedCount() {
+        return rejected;
+    }
+
+    /**
+     * Returns the mean absolute difference between the predicted and the
+     * actual values.
+     *
+     * @return The mean absolute error.
+     */
+    public double getMeanAbsoluteError() {
+        return tracker.getMeanAbsoluteError();
+    }
+
+    /**
+     * Returns the mean absolute difference between the logarithms of the
+     * predicted and the actual values. Only positive predictions and values
+     * are considered.
+     *
+     * @return The mean absolute log error.
+     */
+    public double getMeanAbsoluteLogError() {
+        return tracker.getMeanAbsoluteLogError();
+    }
+
+    /**
+     * Returns the fraction of the samples that exceeded the high estimate of
+     * the prediction. For a Gaussian model this should be about 16%.
+     *
+     * @return The exceedance rate.
+     */
+    public double getExceedanceRate() {
+        return tracker.getExceedanceRate();
+    }
+
+    /**
+     * Returns the statistics of the prediction errors.
+     *
+     * @return The prediction statistics.
+     */
+    public PredictionTracker getPredictionStatistics() {
+        return tracker;
+    }
+
+    /**
+     * Returns the average time spent in {@link Estimator#addSample(double)}
+     * per added sample, in nanoseconds. The time to predict the sample, and
+     * to create the estimators, is not included.
+     *
+     * @return The time per sample.
+     */
+    public double getNanosPerSample() {
+        return (double) nanos / samples;
+    }
+
+    /**
+     * Returns the average number of bytes allocated by
+     * {@link Estimator#addSample(double)} per added sample, or a negative
+     * number if the allocated bytes could not be measured. As for
+     * {@link #getNanosPerSample()}, predictions are not included.
+     *
+     * @return The allocated bytes per sample.
+     */
+    public double getBytesPerSample() {
+        if (!allocationKnown) {
+            return -1;
+        }
+        return (double) allocatedBytes / samples;
+    }
+
+    /**
+     * Returns the header line for a table of reports in the format of
+     * {@link #toString()}.
+     *
+     * @return The header line.
+     */
+    public static String getHeader() {
+        return String.format("%-24s %12s %9s %10s %10s %8s %10s %10s",
+                "model", "predictions", "rejected", "MAE", "log-err", "exceed",
+                "ns/sample", "bytes/smp");
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%-24s %12d %9d %10s %10.4f %7.2f%% %10.1f %10.1f", name,
+                getPredictionCount(), rejected,
+                Utils.formatNumber(getMeanAbsoluteError()),
+                getMeanAbsoluteLogError(), 100 * getExceedanceRate(),
+                getNanosPerSample(), getBytesPerSample());
+    }
+}
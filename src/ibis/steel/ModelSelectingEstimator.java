@@ -0,0 +1,231 @@
+package ibis.steel;
+
+/**
+ * An estimator that feeds every sample to a number of candidate estimators,
+ * and uses the candidate that currently predicts the samples best. Before a
+ * sample is added to a candidate, the log-likelihood of the sample under the
+ * current estimate of that candidate is computed. The score of a candidate is
+ * the exponentially decaying sum of these log-likelihoods, so that the
+ * estimator can switch models when the stochastic properties of the samples
+ * change over time.
+ * <p>
+ * Optionally the candidates are blended instead: likely values are then drawn
+ * from each candidate with a probability proportional to its likelihood, and
+ * high estimates are averaged with the same weights.
+ * <p>
+ * All candidates must accept all samples; in particular log-Gaussian
+ * candidates require positive samples.
+ */
+public class ModelSelectingEstimator implements Estimator {
+    /**
+     * The lower limit of the log-likelihood of a single sample, so that a
+     * single outlier cannot disqualify a candidate forever.
+     */
+    private static final double MIN_LOG_LIKELIHOOD = -100;
+
+    /** The smallest variance that is used to compute a likelihood. */
+    private static final double MIN_VARIANCE = 1e-12;
+
+    private static final double LOG_2PI = Math.log(2 * Math.PI);
+
+    private final Estimator candidates[];
+    private final double scores[];
+    private final double decay;
+    private final boolean blend;
+    private int best = 0;
+
+    /**
+     * Constructs a new model-selecting estimator.
+     *
+     * @param decay
+     *            The decay factor of the scores of the candidates.
+     * @param blend
+     *            If <code>true</code>, blend the candidates, otherwise only use
+     *            the best candidate.
+     * @param candidates
+     *            The candidate estimators.
+     */
+    public ModelSelectingEstimator(final double decay, final boolean blend,
+            final Estimator... candidates) {
+        if (candidates.length == 0) {
+            throw new IllegalArgumentException("No candidate estimators");
+        }
+        if (decay < 0 || decay >= 1 || Double.isNaN(decay)) {
+            throw new IllegalArgumentException("Bad decay factor: " + decay);
+        }
+        this.candidates = candidates.clone();
+        this.scores = new double[candidates.length];
+        this.decay = decay;
+        this.blend = blend;
+    }
+
+    /**
+     * Constructs a new model-selecting estimator that uses the best candidate,
+     * with a decay factor 0.05 for the scores of the candidates.
+     *
+     * @param candidates
+     *            The candidate estimators.
+     */
+    public ModelSelectingEstimator(final Estimator... candidates) {
+        this(0.05, false, candidates);
+    }
+
+    /**
+     * Returns the natural log of the probability density of the given value
+     * according to the given estimate.
+     */
+    static double getLogLikelihood(final Estimate est, final double x) {
+        final double res;
+        if (est instanceof GaussianEstimate) {
+            final GaussianEstimate gest = (GaussianEstimate) est;
+            final double var = Math.max(gest.variance, MIN_VARIANCE);
+            final double d = x - gest.mean;
+            res = -0.5 * (LOG_2PI + Math.log(var) + d * d / var);
+        } else if (est instanceof LogGaussianEstimate) {
+            final LogGaussianEstimate lest = (LogGaussianEstimate) est;
+            if (x <= 0) {
+                return MIN_LOG_LIKELIHOOD;
+            }
+            final double lx = Math.log(x);
+            final double var = Math.max(lest.logVariance, MIN_VARIANCE);
+            final double d = lx - lest.logMean;
+            res = -lx - 0.5 * (LOG_2PI + Math.log(var) + d * d / var);
+        } else if (est instanceof ConstantEstimate) {
+            res = x == ((ConstantEstimate) est).v ? 0 : MIN_LOG_LIKELIHOOD;
+        } else if (est instanceof InfiniteEstimate) {
+            res = MIN_LOG_LIKELIHOOD;
+        } else {
+            throw new IllegalArgumentException(
+                    "ModelSelectingEstimator: cannot compute the likelihood of a "
+                            + est.getClass().getName() + " estimate");
+        }
+        if (Double.isNaN(res) || res < MIN_LOG_LIKELIHOOD) {
+            return MIN_LOG_LIKELIHOOD;
+        }
+        return res;
+    }
+
+    @Override
+    public void addSample(final double v) {
+        int newBest = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            final Estimator c = candidates[i];
+            final double ll = getLogLikelihood(c.getEstimate(), v);
+            scores[i] = (1 - decay) * scores[i] + ll;
+            c.addSample(v);
+            if (scores[i] > scores[newBest]) {
+                newBest = i;
+            }
+        }
+        best = newBest;
+    }
+
+    /**
+     * Returns the relative weights of the candidates, based on their scores.
+     * The weights sum to 1.
+     */
+    private double[] getWeights() {
+        final double max = scores[best];
+        final double weights[] = new double[scores.length];
+        double sum = 0;
+        for (int i = 0; i < scores.length; i++) {
+            weights[i] = Math.exp(scores[i] - max);
+            sum += weights[i];
+        }
+        for (int i = 0; i < scores.length; i++) {
+            weights[i] /= sum;
+        }
+        return weights;
+    }
+
+    private Estimator drawCandidate() {
+        final double weights[] = getWeights();
+        double r = Globals.rng.nextDouble();
+        for (int i = 0; i < weights.length; i++) {
+            r -= weights[i];
+            if (r < 0) {
+                return candidates[i];
+            }
+        }
+        return candidates[best];
+    }
+
+    /**
+     * Returns the candidate estimator that currently has the best score.
+     *
+     * @return The best candidate.
+     */
+    public Estimator getBestCandidate() {
+        return candidates[best];
+    }
+
+    @Override
+    public double getLikelyValue() {
+        if (blend) {
+            return drawCandidate().getLikelyValue();
+        }
+        return candidates[best].getLikelyValue();
+    }
+
+    @Override
+    public String getName() {
+        return "model-selection";
+    }
+
+    @Override
+    public double getHighEstimate() {
+        if (blend) {
+            final double weights[] = getWeights();
+            double res = 0;
+            for (int i = 0; i < candidates.length; i++) {
+                if (weights[i] > 0) {
+                    res += weights[i] * candidates[i].getHighEstimate();
+                }
+            }
+            return res;
+        }
+        return candidates[best].getHighEstimate();
+    }
+
+    @Override
+    public int getSampleCount() {
+        return candidates[best].getSampleCount();
+    }
+
+    /**
+     * Returns the estimate of the best candidate. Estimates of different
+     * models cannot be blended, so this is also done in blending mode.
+     */
+    @Override
+    public Estimate getEstimate() {
+        return candidates[best].getEstimate();
+    }
+
+    @Override
+    public String getStatisticsString() {
+        final StringBuilder s = new StringBuilder();
+        for (int i = 0; i < candidates.length; i++) {
+            if (i > 0) {
+                s.append(' ');
+            }
+            s.append(i == best ? '*' : ' ');
+            s.append(candidates[i].getName());
+            s.append(" score=");
+            s.append(Utils.formatNumber(scores[i]));
+            s.append(" [");
+            s.append(candidates[i].getStatisticsString());
+            s.append(']');
+        }
+        return s.toString();
+    }
+
+    @Override
+    public String format() {
+        return candidates[best].format();
+    }
+
+    @Override
+    public String toString() {
+        return getName() + "(" + candidates[best].getName() + ") " + format();
+    }
+}
@@ -0,0 +1,117 @@
+package ibis.steel;
+
+/**
+ * Accumulates the weighted mean and variance of a sequence of samples, in a
+ * form that allows partial results of consecutive parts of the sequence to be
+ * combined exactly. Samples can have exponentially decaying weights, as in
+ * the decaying estimators: every new sample has weight <code>alpha</code>,
+ * and the weight of all earlier samples is multiplied by
+ * <code>1-alpha</code>. Without decay, every sample has weight 1.
+ * <p>
+ * The accumulated state is the number of samples, their total weight, their
+ * weighted mean, and the weighted sum of their squared differences with the
+ * mean. The incremental updates are the same as those of the estimators, so
+ * that an estimator built from an accumulator is equivalent to one that
+ * received all samples in sequence.
+ */
+class MomentAccumulator {
+    private final double alpha;
+    private final boolean logarithmic;
+    int count = 0;
+    double totalWeight = 0;
+    double mean = 0;
+    double m2 = 0;
+
+    /**
+     * Constructs a new accumulator.
+     *
+     * @param alpha
+     *            The decay factor of the samples, or 0 for no decay.
+     * @param logarithmic
+     *            If <code>true</code>, accumulate the log of the samples.
+     */
+    MomentAccumulator(final double alpha, final boolean logarithmic) {
+        if (alpha < 0 || alpha >= 1 || Double.isNaN(alpha)) {
+            throw new IllegalArgumentException("Bad decay factor: " + alpha);
+        }
+        this.alpha = alpha;
+        this.logarithmic = logarithmic;
+    }
+
+    /**
+     * Constructs a new accumulator that contains a single prior point with
+     * the given mean and variance, weighted as one sample.
+     */
+    MomentAccumulator(final double alpha, final boolean logarithmic,
+            final double mean, final double variance) {
+        this(alpha, logarithmic);
+        this.count = 1;
+        this.totalWeight = 1;
+        this.mean = mean;
+        this.m2 = variance;
+    }
+
+    /**
+     * Adds a sample.
+     *
+     * @param v
+     *            The sample.
+     */
+    void accept(final double v) {
+        final double x;
+        if (logarithmic) {
+            if (v <= 0 || Double.isInfinite(v)) {
+                throw new IllegalArgumentException("Bad sample: v=" + v);
+            }
+            x = FastMath.log(v);
+        } else {
+            x = v;
+        }
+        final double w;
+        if (alpha == 0) {
+            w = 1;
+        } else {
+            totalWeight *= 1 - alpha;
+            m2 *= 1 - alpha;
+            w = alpha;
+        }
+        final double oldWeight = totalWeight;
+        totalWeight += w;
+        final double diff = x - mean;
+        mean += diff * w / totalWeight;
+        m2 += diff * diff * oldWeight * w / totalWeight;
+        count++;
+    }
+
+    /**
+     * Adds the samples of the given accumulator. These samples must follow
+     * the samples of this accumulator in the sequence.
+     *
+     * @param next
+     *            The accumulator with the next samples.
+     */
+    void combine(final MomentAccumulator next) {
+        if (next.count == 0) {
+            return;
+        }
+        if (alpha != 0) {
+            // Our samples have decayed further by all samples of next.
+            final double d = Math.pow(1 - alpha, next.count);
+            totalWeight *= d;
+            m2 *= d;
+        }
+        final double weight = totalWeight + next.totalWeight;
+        final double diff = next.mean - mean;
+        mean += diff * next.totalWeight / weight;
+        m2 += next.m2 + diff * diff * totalWeight * next.totalWeight / weight;
+        totalWeight = weight;
+        count += next.count;
+    }
+
+    /**
+     * Returns the weighted variance of the samples.
+     */
+    double getVariance() {
+        return m2 / totalWeight;
+    }
+}
@@ -0,0 +1,128 @@
+package ibis.steel;
+
+import java.util.Random;
+
+/**
+ * Verifies statistical properties of the estimators against Monte Carlo
+ * simulations. Its {@link #main(String[])} checks the imputation of censored
+ * samples; other checks use its helper methods. Every check is reported, and
+ * the program exits with status 1 if one of them fails.
+ */
+class MonteCarloCheck {
+    private static int failures = 0;
+
+    /**
+     * Reports a check of the given value against the expected one, with the
+     * given tolerance relative to the expected value.
+     */
+    static void check(final String what, final double value,
+            final double expected, final double tolerance) {
+        final double err = Math.abs(value - expected) / Math.abs(expected);
+        final boolean ok = err <= tolerance;
+        if (!ok) {
+            failures++;
+        }
+        System.out.println((ok ? "ok     " : "FAILED ") + what + ": "
+                + value + ", expected " + expected + " (relative error "
+                + Utils.formatNumber(err) + ", tolerance "
+                + Utils.formatNumber(tolerance) + ")");
+    }
+
+    /**
+     * Reports the outcome of all checks, and exits with status 1 if one of
+     * them failed.
+     */
+    static void finish() {
+        if (failures > 0) {
+            System.out.println(failures + " check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    /**
+     * Returns the given number of draws from a normal distribution with the
+     * given mean and standard deviation, or from its exponent if
+     * <code>logarithmic</code> is set.
+     */
+    static double[] draw(final double mean, final double stdDev,
+            final boolean logarithmic, final int n, final long seed) {
+        final Random rng = new Random(seed);
+        final double res[] = new double[n];
+        for (int i = 0; i < n; i++) {
+            final double v = mean + stdDev * rng.nextGaussian();
+            res[i] = logarithmic ? Math.exp(v) : v;
+        }
+        return res;
+    }
+
+    /**
+     * Feeds the given samples to an estimator, where every sample above the
+     * given bound is only reported as censored at that bound, or, if
+     * <code>impute</code> is not set, is replaced by the bound.
+     */
+    private static Estimate feedCensored(final Estimator est,
+            final double samples[], final double bound, final boolean impute) {
+        final CensoredEstimator cest = (CensoredEstimator) est;
+        for (final double v : samples) {
+            if (v <= bound) {
+                est.addSample(v);
+            } else if (impute) {
+                cest.addCensoredSample(bound);
+            } else {
+                est.addSample(bound);
+            }
+        }
+        return est.getEstimate();
+    }
+
+    private static double getCensoredMedian(final Estimator est,
+            final double samples[], final boolean impute) {
+        return Math.exp(((LogGaussianEstimate) feedCensored(est, samples, 10,
+                impute)).logMean);
+    }
+
+    private static double getCensoredMean(final Estimator est,
+            final double samples[]) {
+        return ((GaussianEstimate) feedCensored(est, samples, 11, true)).mean;
+    }
+
+    /**
+     * Checks that imputation of censored samples gives an unbiased location
+     * estimate, in contrast to adding the censoring bound as a sample. The
+     * log-Gaussian estimators get log-normal(2, 0.5) samples censored at 10,
+     * about 40% of them; the Gaussian estimators get normal(10, 2) samples
+     * censored at 11, about 30% of them.
+     */
+    private static void checkCensoredImputation() {
+        final int n = 100000;
+        final double logNormal[] = draw(2, 0.5, true, n, 1);
+        final double normal[] = draw(10, 2, false, n, 2);
+        final double median = Math.exp(2);
+        check("censored log-gaussian median",
+                getCensoredMedian(new LogGaussianEstimator(Math.log(10), 1),
+                        logNormal, true), median, 0.01);
+        check("censored log-gaussian-decaying median",
+                getCensoredMedian(new LogGaussianDecayingEstimator(
+                        Math.log(10), 1, 0.001), logNormal, true), median, 0.02);
+        System.out.println("       (censoring bound added as a sample: "
+                + getCensoredMedian(new LogGaussianEstimator(Math.log(10), 1),
+                        logNormal, false) + ")");
+        check("censored gaussian mean",
+                getCensoredMean(new GaussianEstimator(11, 4), normal), 10, 0.01);
+        check("censored gaussian-decaying mean",
+                getCensoredMean(new GaussianDecayingEstimator(11, 4, 0.001),
+                        normal), 10, 0.02);
+    }
+
+    /**
+     * Checks the imputation of censored samples.
+     *
+     * @param args
+     *            Ignored.
+     */
+    public static void main(final String[] args) {
+        checkCensoredImputation();
+        finish();
+    }
+}
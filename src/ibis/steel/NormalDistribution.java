@@ -0,0 +1,118 @@
+package ibis.steel;
+
+/**
+ * Functions of the standard normal distribution.
+ */
+class NormalDistribution {
+    private static final double SQRT2 = Math.sqrt(2);
+    private static final double SQRT_2PI = Math.sqrt(2 * Math.PI);
+    private static final double LOG_SQRT_2PI = Math.log(SQRT_2PI);
+
+    /**
+     * Beyond this point the tail probabilities are computed with a continued
+     * fraction, since they become too small to compute directly.
+     */
+    private static final double TAIL_LIMIT = 5;
+
+    /**
+     * Returns the probability density of the standard normal distribution in
+     * <code>z</code>.
+     */
+    static double pdf(final double z) {
+        return Math.exp(-0.5 * z * z) / SQRT_2PI;
+    }
+
+    /**
+     * Returns the complementary error function of <code>x</code>, with a
+     * fractional error below 1.2e-7, using a Chebyshev approximation.
+     */
+    static double erfc(final double x) {
+        final double z = Math.abs(x);
+        final double t = 1 / (1 + 0.5 * z);
+        final double p = 0.27886807 + t
+                * (-1.13520398 + t
+                        * (1.48851587 + t * (-0.82215223 + t * 0.17087277)));
+        final double q = -1.26551223 + t
+                * (1.00002368 + t
+                        * (0.37409196 + t
+                                * (0.09678418 + t * (-0.18628806 + t * p))));
+        final double ans = t * Math.exp(-z * z + q);
+        return x >= 0 ? ans : 2 - ans;
+    }
+
+    /**
+     * Returns the probability that a standard normal variable is larger than
+     * <code>z</code>.
+     */
+    static double upperTail(final double z) {
+        return 0.5 * erfc(z / SQRT2);
+    }
+
+    /**
+     * Returns the probability that a standard normal variable is smaller than
+     * <code>z</code>.
+     */
+    static double cdf(final double z) {
+        return 0.5 * erfc(-z / SQRT2);
+    }
+
+    /**
+     * Returns the inverse Mills ratio <code>pdf(z)/upperTail(z)</code>. This
+     * is the expected value of a standard normal variable, given that it is
+     * larger than <code>z</code>. It is accurate deep into the tail.
+     */
+    static double millsRatio(final double z) {
+        if (z < TAIL_LIMIT) {
+            return pdf(z) / upperTail(z);
+        }
+        // Evaluate the continued fraction
+        // upperTail(z)/pdf(z) = 1/(z+1/(z+2/(z+3/(z+...))))
+        // from the bottom up.
+        double f = z;
+        for (int n = 40; n > 0; n--) {
+            f = z + n / f;
+        }
+        return f;
+    }
+
+    /**
+     * Returns <code>millsRatio(z)-z</code>, the expected amount by which a
+     * standard normal variable exceeds <code>z</code>, given that it is larger
+     * than <code>z</code>. Deep in the tail the Mills ratio is about
+     * <code>z+1/z</code>, so the subtraction would cancel; there the
+     * remainder <code>1/(z+2/(z+3/(z+...)))</code> of the continued fraction
+     * is evaluated directly.
+     */
+    static double millsExcess(final double z) {
+        if (z < TAIL_LIMIT) {
+            return pdf(z) / upperTail(z) - z;
+        }
+        double f = z;
+        for (int n = 40; n > 1; n--) {
+            f = z + n / f;
+        }
+        return 1 / f;
+    }
+
+    /**
+     * Returns the natural log of <code>upperTail(z)</code>, which is accurate
+     * even where the tail probability underflows.
+     */
+    static double logUpperTail(final double z) {
+        if (z < TAIL_LIMIT) {
+            return Math.log(upperTail(z));
+        }
+        return -0.5 * z * z - LOG_SQRT_2PI - Math.log(millsRatio(z));
+    }
+
+    /**
+     * Returns <code>upperTail(a)/upperTail(b)</code>, which is accurate even
+     * where the tail probabilities underflow.
+     */
+    static double upperTailRatio(final double a, final double b) {
+        if (a < TAIL_LIMIT && b < TAIL_LIMIT) {
+            return upperTail(a) / upperTail(b);
+        }
+        return Math.exp(logUpperTail(a) - logUpperTail(b));
+    }
+}
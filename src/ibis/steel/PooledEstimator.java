@@ -0,0 +1,142 @@
+package ibis.steel;
+
+/**
+ * An estimator that derives its prior from an {@link EstimatorPool}. The
+ * prior is weighted as a fixed number of samples, so that the estimate moves
+ * from the pooled distribution to the distribution of the samples of this
+ * estimator as they arrive. Since the pool is updated by all its estimators,
+ * the prior of a new estimator reflects everything that is known about its
+ * siblings, and a new estimator produces useful estimates from the start.
+ */
+public class PooledEstimator implements Estimator {
+    private final EstimatorPool pool;
+    private final double priorWeight;
+    private int sampleCount = 0;
+    private double mean = 0.0;
+    private double S = 0.0;
+
+    PooledEstimator(final EstimatorPool pool, final double priorWeight) {
+        if (priorWeight <= 0 || Double.isNaN(priorWeight)) {
+            throw new IllegalArgumentException("Bad prior weight: "
+                    + priorWeight);
+        }
+        this.pool = pool;
+        this.priorWeight = priorWeight;
+    }
+
+    @Override
+    public void addSample(final double v) {
+        final double x;
+        if (pool.logarithmic) {
+            if (v <= 0 || Double.isInfinite(v)) {
+                throw new IllegalArgumentException("Bad sample: v=" + v);
+            }
+            x = Math.log(v);
+        } else {
+            x = v;
+        }
+        sampleCount++;
+        final double oldMean = mean;
+        mean += (x - mean) / sampleCount;
+        S += (x - oldMean) * (x - mean);
+        pool.addValue(x);
+    }
+
+    private double getMean() {
+        return EstimatorPool.combineMean(pool.getMean(), priorWeight,
+                sampleCount, mean);
+    }
+
+    private double getVariance(final double cm) {
+        return EstimatorPool.combineVariance(pool.getMean(),
+                pool.getVariance(), priorWeight, sampleCount, mean, S, cm);
+    }
+
+    @Override
+    public double getLikelyValue() {
+        final double m = getMean();
+        final double v = m + Math.sqrt(getVariance(m))
+                * Globals.rng.nextGaussian();
+        return pool.logarithmic ? Math.exp(v) : v;
+    }
+
+    @Override
+    public String getName() {
+        return pool.logarithmic ? "pooled-log-gaussian" : "pooled-gaussian";
+    }
+
+    @Override
+    public double getHighEstimate() {
+        final double m = getMean();
+        final double v = m + Math.sqrt(getVariance(m));
+        return pool.logarithmic ? Math.exp(v) : v;
+    }
+
+    /**
+     * Returns the number of samples added to this estimator, plus one for the
+     * prior, as for the other estimators. The prior counts as one, even
+     * though its weight in the estimate is <code>priorWeight</code> samples;
+     * the count is only used to track new samples, so the offset does not
+     * matter, and the samples that siblings add to the pool are not
+     * included. See {@link #getVersion()} for those.
+     */
+    @Override
+    public int getSampleCount() {
+        return sampleCount + 1;
+    }
+
+    /**
+     * Returns a number that changes whenever the estimate of this estimator
+     * may have changed. In contrast to the sample count, this includes the
+     * samples that siblings add to the pool, since they change the prior of
+     * this estimator.
+     *
+     * @return The version of the estimate.
+     */
+    public long getVersion() {
+        return sampleCount + pool.getVersion();
+    }
+
+    @Override
+    public Estimate getEstimate() {
+        final double m = getMean();
+        if (pool.logarithmic) {
+            return new LogGaussianEstimate(m, getVariance(m), sampleCount + 1);
+        }
+        return new GaussianEstimate(m, getVariance(m), sampleCount + 1);
+    }
+
+    @Override
+    public String getStatisticsString() {
+        final double m = getMean();
+        final double stdDev = Math.sqrt(getVariance(m));
+        final double priorFraction = priorWeight / (priorWeight + sampleCount);
+        if (pool.logarithmic) {
+            return "mean=" + Utils.formatNumber(Math.exp(m)) + " range="
+                    + Utils.formatNumber(Math.exp(m - stdDev)) + "..."
+                    + Utils.formatNumber(Math.exp(m + stdDev)) + " samples="
+                    + sampleCount + " prior fraction="
+                    + Utils.formatNumber(priorFraction);
+        }
+        return "mean=" + Utils.formatNumber(m) + " stdDev="
+                + Utils.formatNumber(stdDev) + " samples=" + sampleCount
+                + " prior fraction=" + Utils.formatNumber(priorFraction);
+    }
+
+    @Override
+    public String format() {
+        final double m = getMean();
+        final double variance = getVariance(m);
+        if (pool.logarithmic) {
+            return Utils.formatNumber(Math.exp(m)) + "~"
+                    + Utils.formatNumber(Math.exp(0.5 * variance));
+        }
+        return Utils.formatNumber(m) + "\u00B1"
+                + Utils.formatNumber(Math.sqrt(variance));
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+}
@@ -0,0 +1,264 @@
+package ibis.steel;
+
+/**
+ * Streaming statistics of the errors of a series of predictions. For every
+ * prediction, the estimate that was made before the actual value was known
+ * is recorded together with that value. The tracker maintains, in constant
+ * time and space per prediction:
+ * <ul>
+ * <li>the bias, mean absolute error and root mean square error of the point
+ * prediction: the mean of a Gaussian estimate, or the median of a
+ * log-Gaussian estimate;</li>
+ * <li>the mean absolute error of the logarithm of the point prediction;</li>
+ * <li>the fraction of the actual values that exceeded the high estimate. For
+ * a well-calibrated Gaussian model this should be about 16%.</li>
+ * </ul>
+ * The mean absolute error and the exceedance rate are also maintained with
+ * exponential decay, so that the recent calibration can be observed.
+ */
+public class PredictionTracker {
+    private final double alpha;
+    private long count = 0;
+    private long exceedances = 0;
+    private long errorCount = 0;
+    private double sumResidual = 0;
+    private double sumAbsError = 0;
+    private double sumSquaredError = 0;
+    private long logCount = 0;
+    private double sumAbsLogError = 0;
+    private double recentAbsError = 0;
+    private double recentExceedanceRate = 0;
+
+    /**
+     * Constructs a new tracker.
+     *
+     * @param alpha
+     *            The decay factor of the recent statistics.
+     */
+    public PredictionTracker(final double alpha) {
+        if (!(alpha > 0 && alpha <= 1)) {
+            throw new IllegalArgumentException("Bad decay factor: " + alpha);
+        }
+        this.alpha = alpha;
+    }
+
+    /**
+     * Constructs a new tracker with a decay factor 0.01 for the recent
+     * statistics.
+     */
+    public PredictionTracker() {
+        this(0.01);
+    }
+
+    /**
+     * Returns the point prediction of the given estimate: the mean of a
+     * Gaussian estimate, and the median of a log-Gaussian estimate.
+     */
+    static double getPredictedValue(final Estimate est) {
+        if (est instanceof GaussianEstimate) {
+            return ((GaussianEstimate) est).mean;
+        }
+        if (est instanceof LogGaussianEstimate) {
+            return FastMath.exp(((LogGaussianEstimate) est).logMean);
+        }
+        if (est instanceof ConstantEstimate) {
+            return ((ConstantEstimate) est).v;
+        }
+        if (est instanceof InfiniteEstimate) {
+            return Double.POSITIVE_INFINITY;
+        }
+        throw new IllegalArgumentException(
+                "PredictionTracker: cannot predict with a "
+                        + est.getClass().getName() + " estimate");
+    }
+
+    /**
+     * Records a prediction and the actual value.
+     *
+     * @param prediction
+     *            The estimate that was made before the value was known.
+     * @param actual
+     *            The actual value.
+     */
+    public void record(final Estimate prediction, final double actual) {
+        record(getPredictedValue(prediction), prediction.getHighEstimate(),
+                actual);
+    }
+
+    /**
+     * Records a prediction and the actual value. Use this method to track an
+     * estimator, since the high estimate of an estimator need not be the same
+     * as that of its estimate.
+     *
+     * @param predicted
+     *            The point prediction that was made before the value was
+     *            known.
+     * @param high
+     *            The high estimate that was made before the value was known.
+     * @param actual
+     *            The actual value.
+     */
+    public void record(final double predicted, final double high,
+            final double actual) {
+        final double exceeded = actual > high ? 1 : 0;
+        count++;
+        if (exceeded != 0) {
+            exceedances++;
+        }
+        recentExceedanceRate += alpha * (exceeded - recentExceedanceRate);
+        if (Double.isInfinite(predicted)) {
+            return;
+        }
+        final double residual = actual - predicted;
+        final double absError = Math.abs(residual);
+        errorCount++;
+        sumResidual += residual;
+        sumAbsError += absError;
+        sumSquaredError += residual * residual;
+        recentAbsError += alpha * (absError - recentAbsError);
+        if (predicted > 0 && actual > 0) {
+            logCount++;
+            sumAbsLogError += Math.abs(FastMath.log(actual / predicted));
+        }
+    }
+
+    /**
+     * Adds the statistics of the given tracker to this one. The recent
+     * statistics are averaged, weighted by the number of predictions.
+     *
+     * @param t
+     *            The tracker to merge.
+     */
+    public void merge(final PredictionTracker t) {
+        final long total = count + t.count;
+        if (total > 0) {
+            recentExceedanceRate = (count * recentExceedanceRate + t.count
+                    * t.recentExceedanceRate)
+                    / total;
+        }
+        final long totalErrors = errorCount + t.errorCount;
+        if (totalErrors > 0) {
+            recentAbsError = (errorCount * recentAbsError + t.errorCount
+                    * t.recentAbsError)
+                    / totalErrors;
+        }
+        count = total;
+        exceedances += t.exceedances;
+        errorCount = totalErrors;
+        sumResidual += t.sumResidual;
+        sumAbsError += t.sumAbsError;
+        sumSquaredError += t.sumSquaredError;
+        logCount += t.logCount;
+        sumAbsLogError += t.sumAbsLogError;
+    }
+
+    /**
+     * Forgets all recorded predictions.
+     */
+    public void reset() {
+        count = 0;
+        exceedances = 0;
+        errorCount = 0;
+        sumResidual = 0;
+        sumAbsError = 0;
+        sumSquaredError = 0;
+        logCount = 0;
+        sumAbsLogError = 0;
+        recentAbsError = 0;
+        recentExceedanceRate = 0;
+    }
+
+    /**
+     * Returns the number of recorded predictions.
+     *
+     * @return The number of predictions.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean difference between the actual and the predicted
+     * values. A positive bias means that the predictions are too low.
+     *
+     * @return The bias.
+     */
+    public double getBias() {
+        return sumResidual / errorCount;
+    }
+
+    /**
+     * Returns the mean absolute difference between the predicted and the
+     * actual values.
+     *
+     * @return The mean absolute error.
+     */
+    public double getMeanAbsoluteError() {
+        return sumAbsError / errorCount;
+    }
+
+    /**
+     * Returns the exponentially decaying mean absolute difference between the
+     * predicted and the actual values.
+     *
+     * @return The recent mean absolute error.
+     */
+    public double getRecentMeanAbsoluteError() {
+        return recentAbsError;
+    }
+
+    /**
+     * Returns the root of the mean squared difference between the predicted
+     * and the actual values.
+     *
+     * @return The root mean square error.
+     */
+    public double getRootMeanSquareError() {
+        return Math.sqrt(sumSquaredError / errorCount);
+    }
+
+    /**
+     * Returns the mean absolute difference between the logarithms of the
+     * predicted and the actual values. Only positive predictions and values
+     * are considered.
+     *
+     * @return The mean absolute log error.
+     */
+    public double getMeanAbsoluteLogError() {
+        return sumAbsLogError / logCount;
+    }
+
+    /**
+     * Returns the fraction of the actual values that exceeded the high
+     * estimate of their prediction.
+     *
+     * @return The exceedance rate.
+     */
+    public double getExceedanceRate() {
+        return (double) exceedances / count;
+    }
+
+    /**
+     * Returns the exponentially decaying fraction of the actual values that
+     * exceeded the high estimate of their prediction.
+     *
+     * @return The recent exceedance rate.
+     */
+    public double getRecentExceedanceRate() {
+        return recentExceedanceRate;
+    }
+
+    @Override
+    public String toString() {
+        return "predictions=" + count + " bias="
+                + Utils.formatNumber(getBias()) + " MAE="
+                + Utils.formatNumber(getMeanAbsoluteError()) + " RMSE="
+                + Utils.formatNumber(getRootMeanSquareError())
+                + " log error="
+                + Utils.formatNumber(getMeanAbsoluteLogError())
+                + " exceedance="
+                + Utils.formatNumber(getExceedanceRate())
+                + " recent exceedance="
+                + Utils.formatNumber(getRecentExceedanceRate());
+    }
+}
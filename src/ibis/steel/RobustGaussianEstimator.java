@@ -0,0 +1,133 @@
+package ibis.steel;
+
+/**
+ * An estimator that assumes a Gaussian distribution for the estimated value,
+ * with the weight of older samples exponentially decaying, and that limits the
+ * influence of outliers. Samples that are further from the current mean than
+ * a given number of standard deviations are clipped to that distance before
+ * they are added (Huber-style M-estimation). Thus a single extreme sample only
+ * has a bounded effect on the mean and the variance. A persistent change in
+ * the sampled signal is still followed, since every clipped sample widens the
+ * variance, and with it the clipping distance.
+ * <p>
+ * The number of clipped samples is counted, and is available through
+ * {@link #getOutlierCount()}.
+ */
+public class RobustGaussianEstimator implements Estimator {
+    private double mean;
+    private double variance;
+    private final double alpha;
+    private final double threshold;
+    private int sampleCount = 1;
+    private int outlierCount = 0;
+
+    /**
+     * Constructs a new robust estimator.
+     *
+     * @param mean
+     *            The initial mean of the estimator.
+     * @param variance
+     *            The initial variance of the estimator.
+     * @param alpha
+     *            The decay factor of the estimator.
+     * @param threshold
+     *            The distance from the mean, in standard deviations, beyond
+     *            which samples are clipped.
+     */
+    public RobustGaussianEstimator(final double mean, final double variance,
+            final double alpha, final double threshold) {
+        if (!(threshold > 0)) {
+            throw new IllegalArgumentException("Bad threshold: " + threshold);
+        }
+        this.mean = mean;
+        this.variance = variance;
+        this.alpha = alpha;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Constructs a new robust estimator with a decay factor 0.1, that clips
+     * samples beyond three standard deviations.
+     *
+     * @param mean
+     *            The initial mean of the estimator.
+     * @param variance
+     *            The initial variance of the estimator.
+     */
+    public RobustGaussianEstimator(final double mean, final double variance) {
+        this(mean, variance, 0.1, 3.0);
+    }
+
+    @Override
+    public void addSample(final double x) {
+        double diff = x - mean;
+        final double limit = threshold * Math.sqrt(variance);
+        if (limit > 0 && Math.abs(diff) > limit) {
+            diff = diff > 0 ? limit : -limit;
+            outlierCount++;
+        }
+        final double incr = alpha * diff;
+        mean += incr;
+        variance = (1 - alpha) * (variance + diff * incr);
+        sampleCount++;
+    }
+
+    /**
+     * Returns the number of samples that were clipped because they were too
+     * far from the mean.
+     *
+     * @return The number of outliers.
+     */
+    public int getOutlierCount() {
+        return outlierCount;
+    }
+
+    @Override
+    public double getHighEstimate() {
+        return mean + Math.sqrt(variance);
+    }
+
+    // FIXME: this is just an intuitive approximation of a likely values comp.
+    private double getLikelyError() {
+        return Math.sqrt(variance) / (1 - alpha);
+    }
+
+    @Override
+    public double getLikelyValue() {
+        return mean + getLikelyError() * Globals.rng.nextGaussian();
+    }
+
+    @Override
+    public String getName() {
+        return "robust-gaussian";
+    }
+
+    @Override
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+
+    @Override
+    public Estimate getEstimate() {
+        return new GaussianEstimate(mean, variance, sampleCount);
+    }
+
+    @Override
+    public String getStatisticsString() {
+        return "mean=" + Utils.formatNumber(mean) + " stdDev="
+                + Utils.formatNumber(Math.sqrt(variance)) + " likely error="
+                + Utils.formatNumber(getLikelyError()) + " samples="
+                + sampleCount + " outliers=" + outlierCount;
+    }
+
+    @Override
+    public String format() {
+        return Utils.formatNumber(mean) + "\u00B1"
+                + Utils.formatNumber(Math.sqrt(variance));
+    }
+}
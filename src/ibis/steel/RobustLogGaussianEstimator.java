@@ -0,0 +1,152 @@
+package ibis.steel;
+
+/**
+ * An estimator that assumes a log-Gaussian distribution for the estimated
+ * value, with the weight of older samples exponentially decaying, and that
+ * limits the influence of outliers. The log of a sample that is further from
+ * the current log mean than a given number of standard deviations is clipped
+ * to that distance before it is added (Huber-style M-estimation). Thus a
+ * single extremely slow or fast sample only has a bounded effect on the
+ * estimate. A persistent change in the sampled signal is still followed,
+ * since every clipped sample widens the variance, and with it the clipping
+ * distance.
+ * <p>
+ * The number of clipped samples is counted, and is available through
+ * {@link #getOutlierCount()}.
+ */
+public class RobustLogGaussianEstimator implements Estimator {
+    private double logMean;
+    private double logVariance;
+    private final double alpha;
+    private final double threshold;
+    private int sampleCount = 1;
+    private int outlierCount = 0;
+
+    /**
+     * Constructs a new robust log-Gaussian estimator.
+     *
+     * @param logMean
+     *            The initial mean of the log.
+     * @param logVariance
+     *            The initial variance of the log.
+     * @param alpha
+     *            The decay factor of the estimator.
+     * @param threshold
+     *            The distance from the log mean, in standard deviations,
+     *            beyond which the log of a sample is clipped.
+     */
+    public RobustLogGaussianEstimator(final double logMean,
+            final double logVariance, final double alpha, final double threshold) {
+        if (Double.isInfinite(logMean) || Double.isNaN(logMean)
+                || Double.isInfinite(logVariance) || Double.isNaN(logVariance)
+                || logVariance < 0) {
+            throw new IllegalArgumentException("Bad distribution: logMean="
+                    + logMean + " logVariance=" + logVariance);
+        }
+        if (!(threshold > 0)) {
+            throw new IllegalArgumentException("Bad threshold: " + threshold);
+        }
+        this.logMean = logMean;
+        this.logVariance = logVariance;
+        this.alpha = alpha;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Constructs a new robust log-Gaussian estimator with a decay factor 0.1,
+     * that clips samples beyond three standard deviations.
+     *
+     * @param logMean
+     *            The initial mean of the log.
+     * @param logVariance
+     *            The initial variance of the log.
+     */
+    public RobustLogGaussianEstimator(final double logMean,
+            final double logVariance) {
+        this(logMean, logVariance, 0.1, 3.0);
+    }
+
+    @Override
+    public void addSample(final double v) {
+        if (v <= 0 || Double.isInfinite(v)) {
+            throw new IllegalArgumentException("Bad sample: v=" + v);
+        }
+        double diff = FastMath.log(v) - logMean;
+        final double limit = threshold * Math.sqrt(logVariance);
+        if (limit > 0 && Math.abs(diff) > limit) {
+            diff = diff > 0 ? limit : -limit;
+            outlierCount++;
+        }
+        final double incr = alpha * diff;
+        logMean += incr;
+        logVariance = (1 - alpha) * (logVariance + diff * incr);
+        sampleCount++;
+    }
+
+    /**
+     * Returns the number of samples that were clipped because they were too
+     * far from the mean.
+     *
+     * @return The number of outliers.
+     */
+    public int getOutlierCount() {
+        return outlierCount;
+    }
+
+    private double getLogStdDev() {
+        return Math.sqrt(logVariance);
+    }
+
+    @Override
+    public double getHighEstimate() {
+        return FastMath.exp(logMean + getLogStdDev());
+    }
+
+    // FIXME: this is just an intuitive approximation of a likely values comp.
+    private double getLikelyError() {
+        return getLogStdDev() / (1 - alpha);
+    }
+
+    @Override
+    public double getLikelyValue() {
+        return FastMath.exp(logMean + getLikelyError()
+                * Globals.rng.nextGaussian());
+    }
+
+    @Override
+    public String getName() {
+        return "robust-log-gaussian";
+    }
+
+    @Override
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+
+    @Override
+    public Estimate getEstimate() {
+        return new LogGaussianEstimate(logMean, logVariance, sampleCount);
+    }
+
+    @Override
+    public String getStatisticsString() {
+        final double stdDev = getLogStdDev();
+        final double rangeMin = FastMath.exp(logMean - stdDev);
+        final double rangeMax = FastMath.exp(logMean + stdDev);
+        return "mean=" + Utils.formatNumber(FastMath.exp(logMean)) + " range="
+                + Utils.formatNumber(rangeMin) + "..."
+                + Utils.formatNumber(rangeMax) + " samples=" + sampleCount
+                + " outliers=" + outlierCount;
+    }
+
+    @Override
+    public String format() {
+        return Utils.formatNumber(FastMath.exp(logMean)) + "~"
+                + Utils.formatNumber(FastMath.exp(0.5 * logVariance));
+    }
+}
@@ -0,0 +1,25 @@
+package ibis.steel;
+
+/**
+ * An estimate expression that is the product of an expression and a constant.
+ */
+class ScaledExpression extends EstimateExpression {
+    private final EstimateExpression operand;
+    private final double c;
+
+    ScaledExpression(final EstimateExpression operand, final double c) {
+        this.operand = operand;
+        this.c = c;
+        operand.addParent(this);
+    }
+
+    @Override
+    Estimate compute() {
+        return operand.getEstimate().multiply(c);
+    }
+
+    @Override
+    public String toString() {
+        return Utils.formatNumber(c) + "*" + operand;
+    }
+}
@@ -0,0 +1,34 @@
+package ibis.steel;
+
+/**
+ * The interface of a scheduler that is evaluated by the
+ * {@link SchedulingSimulator}. For every task the scheduler selects the
+ * worker that should execute it, based on the current state of the workers.
+ * Every worker has its own estimator of the execution time of its tasks; the
+ * estimator only learns the execution time of a task once it has completed.
+ */
+public interface Scheduler {
+    /**
+     * Returns the name of the scheduler.
+     *
+     * @return The name.
+     */
+    String getName();
+
+    /**
+     * Selects the worker that should execute the next task. The arrays must
+     * not be modified.
+     *
+     * @param estimators
+     *            The execution time estimators of the workers.
+     * @param queueLengths
+     *            For each worker, the number of tasks that it is executing or
+     *            that are waiting in its queue.
+     * @param elapsed
+     *            For each worker, the time that it has spent on its current
+     *            task, or 0 if it is idle.
+     * @return The index of the selected worker.
+     */
+    int selectWorker(Estimator estimators[], int queueLengths[],
+            double elapsed[]);
+}
@@ -0,0 +1,474 @@
+package ibis.steel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A discrete-event simulator of a cluster of heterogeneous workers, to
+ * evaluate schedulers that use the estimators of this package. Tasks arrive
+ * as a Poisson process; for every task a {@link Scheduler} selects a worker,
+ * and the task is appended to the FIFO queue of that worker. Every worker has
+ * a log-Gaussian execution time distribution with its own median and spread.
+ * Optionally the median of every worker drifts over time as a sine wave with
+ * its own phase, so that the fastest worker changes during the run.
+ * <p>
+ * Every worker has its own estimator. When a task completes, its execution
+ * time is added to the estimator of its worker, so the schedulers only know
+ * what they could know in a real system. All runs of a simulator see the
+ * same arrival times and the same random task sizes, so that the schedulers
+ * are compared on the same workload.
+ * <p>
+ * The {@link #main(String[])} method compares a number of standard
+ * schedulers.
+ */
+public class SchedulingSimulator {
+    private final int taskCount;
+    private final long seed;
+    private final double logMedians[];
+    private final double logStdDevs[];
+    private final double phases[];
+    private final double drift;
+    private final double arrivalRate;
+    private final double period;
+    private final double nominalValue;
+
+    /** The execution state of a single worker. */
+    private static final class Worker {
+        /** The completion times of the queued tasks, as a ring buffer. */
+        double completions[] = new double[16];
+
+        /** The execution times of the queued tasks. */
+        double durations[] = new double[16];
+        int head = 0;
+        int size = 0;
+
+        /** The time the worker becomes idle. */
+        double freeAt = 0;
+
+        void add(final double completion, final double duration) {
+            if (size == completions.length) {
+                final int n = 2 * size;
+                final double c[] = new double[n];
+                final double d[] = new double[n];
+                for (int i = 0; i < size; i++) {
+                    final int ix = (head + i) % size;
+                    c[i] = completions[ix];
+                    d[i] = durations[ix];
+                }
+                completions = c;
+                durations = d;
+                head = 0;
+            }
+            final int ix = (head + size) % completions.length;
+            completions[ix] = completion;
+            durations[ix] = duration;
+            size++;
+        }
+    }
+
+    /**
+     * Constructs a new simulator.
+     *
+     * @param workers
+     *            The number of workers.
+     * @param tasks
+     *            The number of tasks to simulate.
+     * @param load
+     *            The arrival rate of the tasks, as a fraction of the total
+     *            capacity of the workers.
+     * @param heterogeneity
+     *            The ratio between the median execution times of the slowest
+     *            and the fastest worker.
+     * @param drift
+     *            The amplitude of the drift of the log of the median execution
+     *            time of every worker. The drift has a period of a tenth of
+     *            the run.
+     * @param seed
+     *            The seed of the random generator of the workload.
+     */
+    public SchedulingSimulator(final int workers, final int tasks,
+            final double load, final double heterogeneity, final double drift,
+            final long seed) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Bad worker count: " + workers);
+        }
+        if (tasks < 1) {
+            throw new IllegalArgumentException("Bad task count: " + tasks);
+        }
+        if (!(load > 0)) {
+            throw new IllegalArgumentException("Bad load: " + load);
+        }
+        if (!(heterogeneity >= 1)) {
+            throw new IllegalArgumentException("Bad heterogeneity: "
+                    + heterogeneity);
+        }
+        if (!(drift >= 0)) {
+            throw new IllegalArgumentException("Bad drift: " + drift);
+        }
+        this.taskCount = tasks;
+        this.seed = seed;
+        this.drift = drift;
+        final Random rng = new Random(seed);
+        logMedians = new double[workers];
+        logStdDevs = new double[workers];
+        phases = new double[workers];
+        double capacity = 0;
+        for (int w = 0; w < workers; w++) {
+            logMedians[w] = Math.log(heterogeneity) * rng.nextDouble();
+            logStdDevs[w] = 0.1 + 0.5 * rng.nextDouble();
+            phases[w] = 2 * Math.PI * rng.nextDouble();
+            capacity += Math.exp(-logMedians[w] - 0.5 * logStdDevs[w]
+                    * logStdDevs[w]);
+        }
+        arrivalRate = load * capacity;
+        period = 0.1 * tasks / arrivalRate;
+        nominalValue = Math.sqrt(heterogeneity);
+    }
+
+    /**
+     * Returns the execution time of a task on the given worker.
+     *
+     * @param w
+     *            The worker.
+     * @param start
+     *            The time the task starts.
+     * @param z
+     *            The size of the task, as a standard normal deviate.
+     */
+    private double getDuration(final int w, final double start, final double z) {
+        double logMedian = logMedians[w];
+        if (drift != 0) {
+            logMedian += drift
+                    * Math.sin(2 * Math.PI * start / period + phases[w]);
+        }
+        return Math.exp(logMedian + logStdDevs[w] * z);
+    }
+
+    /**
+     * Adds the execution times of all tasks that completed before the given
+     * time to the estimators of their workers.
+     */
+    private static void completeTasks(final double now,
+            final Worker workers[], final Estimator estimators[],
+            final int queueLengths[], final double elapsed[]) {
+        for (int w = 0; w < workers.length; w++) {
+            final Worker wk = workers[w];
+            while (wk.size > 0 && wk.completions[wk.head] <= now) {
+                estimators[w].addSample(wk.durations[wk.head]);
+                wk.head = (wk.head + 1) % wk.completions.length;
+                wk.size--;
+            }
+            queueLengths[w] = wk.size;
+            if (wk.size > 0) {
+                final double c = wk.completions[wk.head];
+                elapsed[w] = now - (c - wk.durations[wk.head]);
+            } else {
+                elapsed[w] = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the average cost of a pair of calls to
+     * {@link System#nanoTime()}.
+     */
+    private static long getClockOverhead() {
+        final int n = 1000000;
+        long sum = 0;
+        for (int i = 0; i < n; i++) {
+            final long t = System.nanoTime();
+            sum += System.nanoTime() - t;
+        }
+        return sum / n;
+    }
+
+    /**
+     * Simulates all tasks with the given scheduler.
+     *
+     * @param scheduler
+     *            The scheduler to evaluate.
+     * @param factory
+     *            The factory of the estimators of the workers. The first
+     *            sample that is given to the factory is a nominal execution
+     *            time, not an actual one.
+     * @return The report of the run.
+     */
+    public SimulationReport run(final Scheduler scheduler,
+            final EstimatorFactory factory) {
+        final int n = logMedians.length;
+        final Worker workers[] = new Worker[n];
+        final Estimator estimators[] = new Estimator[n];
+        for (int w = 0; w < n; w++) {
+            workers[w] = new Worker();
+            estimators[w] = factory.newEstimator(nominalValue);
+        }
+        final int queueLengths[] = new int[n];
+        final double elapsed[] = new double[n];
+        final double latencies[] = new double[taskCount];
+        final Random rng = new Random(seed + 1);
+        final long overhead = getClockOverhead();
+        long decisionNanos = 0;
+        double now = 0;
+        double makespan = 0;
+        double sumLatency = 0;
+        for (int i = 0; i < taskCount; i++) {
+            now -= Math.log(1 - rng.nextDouble()) / arrivalRate;
+            final double z = rng.nextGaussian();
+            completeTasks(now, workers, estimators, queueLengths, elapsed);
+            final long start = System.nanoTime();
+            final int w = scheduler.selectWorker(estimators, queueLengths,
+                    elapsed);
+            decisionNanos += System.nanoTime() - start - overhead;
+            final Worker wk = workers[w];
+            final double startTime = Math.max(now, wk.freeAt);
+            final double duration = getDuration(w, startTime, z);
+            wk.freeAt = startTime + duration;
+            wk.add(wk.freeAt, duration);
+            latencies[i] = wk.freeAt - now;
+            sumLatency += latencies[i];
+            if (wk.freeAt > makespan) {
+                makespan = wk.freeAt;
+            }
+        }
+        Arrays.sort(latencies);
+        final SimulationReport res = new SimulationReport(scheduler.getName());
+        res.tasks = taskCount;
+        res.makespan = makespan;
+        res.meanLatency = sumLatency / taskCount;
+        res.p99Latency = latencies[(int) (0.99 * (taskCount - 1))];
+        res.decisionNanos = Math.max(0, decisionNanos);
+        return res;
+    }
+
+    /**
+     * Returns the index of the smallest value, picking a random one of the
+     * smallest values if there are several.
+     */
+    private static int selectSmallest(final double costs[],
+            final Random rng) {
+        int best = 0;
+        int ties = 1;
+        for (int w = 1; w < costs.length; w++) {
+            if (costs[w] < costs[best]) {
+                best = w;
+                ties = 1;
+            } else if (costs[w] == costs[best]) {
+                ties++;
+                if (rng.nextInt(ties) == 0) {
+                    best = w;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the mean of the given estimate. For an estimate of an unknown
+     * type, this is the expected remainder after 0, which equals the mean for
+     * a non-negative value.
+     */
+    private static double getMean(final Estimate est) {
+        if (est instanceof GaussianEstimate) {
+            return ((GaussianEstimate) est).mean;
+        }
+        if (est instanceof LogGaussianEstimate) {
+            final LogGaussianEstimate lest = (LogGaussianEstimate) est;
+            return Math.exp(lest.logMean + 0.5 * lest.logVariance);
+        }
+        if (est instanceof ConstantEstimate) {
+            return ((ConstantEstimate) est).v;
+        }
+        return est.getExpectedRemaining(0);
+    }
+
+    /**
+     * Returns the standard schedulers: random and round-robin selection,
+     * selection of the shortest queue, and selection of the earliest
+     * estimated completion time of the new task. The completion time of a
+     * task on a worker is estimated as the expected remaining time of the
+     * current task, plus the time for the <code>k</code> tasks that are
+     * waiting and the new task, according to
+     * {@link Estimate#sumIndependent(int)}. The time for these
+     * <code>k</code> tasks is either the mean, the high estimate, or a
+     * likely value.
+     *
+     * @param seed
+     *            The seed of the random generator of the schedulers.
+     * @return The schedulers.
+     */
+    public static List<Scheduler> getStandardSchedulers(final long seed) {
+        final Random rng = new Random(seed);
+        final List<Scheduler> res = new ArrayList<Scheduler>();
+        res.add(new Scheduler() {
+            @Override
+            public String getName() {
+                return "random";
+            }
+
+            @Override
+            public int selectWorker(final Estimator estimators[],
+                    final int queueLengths[], final double elapsed[]) {
+                return rng.nextInt(estimators.length);
+            }
+        });
+        res.add(new Scheduler() {
+            private int next = 0;
+
+            @Override
+            public String getName() {
+                return "round-robin";
+            }
+
+            @Override
+            public int selectWorker(final Estimator estimators[],
+                    final int queueLengths[], final double elapsed[]) {
+                final int w = next;
+                next = (next + 1) % estimators.length;
+                return w;
+            }
+        });
+        res.add(new Scheduler() {
+            private double costs[] = new double[0];
+
+            @Override
+            public String getName() {
+                return "shortest-queue";
+            }
+
+            @Override
+            public int selectWorker(final Estimator estimators[],
+                    final int queueLengths[], final double elapsed[]) {
+                if (costs.length != estimators.length) {
+                    costs = new double[estimators.length];
+                }
+                for (int w = 0; w < costs.length; w++) {
+                    costs[w] = queueLengths[w];
+                }
+                return selectSmallest(costs, rng);
+            }
+        });
+        res.add(new EstimatingScheduler("expected-completion", rng) {
+            @Override
+            double getQueueCost(final Estimate est, final int k) {
+                return getMean(est.sumIndependent(k));
+            }
+        });
+        res.add(new EstimatingScheduler("high-completion", rng) {
+            @Override
+            double getQueueCost(final Estimate est, final int k) {
+                return est.sumIndependent(k).getHighEstimate();
+            }
+        });
+        res.add(new EstimatingScheduler("likely-completion", rng) {
+            @Override
+            double getQueueCost(final Estimate est, final int k) {
+                return est.sumIndependent(k).getLikelyValue();
+            }
+        });
+        return res;
+    }
+
+    /**
+     * A scheduler that selects the worker with the earliest estimated
+     * completion time of the new task.
+     */
+    private static abstract class EstimatingScheduler implements Scheduler {
+        private final String name;
+        private final Random rng;
+        private double costs[] = new double[0];
+
+        EstimatingScheduler(final String name, final Random rng) {
+            this.name = name;
+            this.rng = rng;
+        }
+
+        /**
+         * Returns the estimated time to execute <code>k</code> tasks with the
+         * given execution time estimate.
+         */
+        abstract double getQueueCost(Estimate est, int k);
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int selectWorker(final Estimator estimators[],
+                final int queueLengths[], final double elapsed[]) {
+            if (costs.length != estimators.length) {
+                costs = new double[estimators.length];
+            }
+            for (int w = 0; w < costs.length; w++) {
+                final Estimate est = estimators[w].getEstimate();
+                final int q = queueLengths[w];
+                if (q == 0) {
+                    costs[w] = getQueueCost(est, 1);
+                } else {
+                    costs[w] = est.getExpectedRemaining(elapsed[w])
+                            + getQueueCost(est, q);
+                }
+            }
+            return selectSmallest(costs, rng);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: SchedulingSimulator [-workers <n>]"
+                + " [-tasks <n>] [-load <f>] [-heterogeneity <f>]"
+                + " [-drift <f>] [-seed <n>]");
+        System.exit(2);
+    }
+
+    /**
+     * Compares the standard schedulers, using log-Gaussian decaying
+     * estimators. Arguments: <code>[-workers n] [-tasks n] [-load f]
+     * [-heterogeneity f] [-drift f] [-seed n]</code>. By default 16 workers
+     * execute 1000000 tasks at a load of 0.9, with a heterogeneity of 4 and a
+     * drift of 0.5.
+     *
+     * @param args
+     *            The command-line arguments.
+     */
+    public static void main(final String[] args) {
+        int workers = 16;
+        int tasks = 1000000;
+        double load = 0.9;
+        double heterogeneity = 4;
+        double drift = 0.5;
+        long seed = 1;
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 >= args.length) {
+                usage();
+            } else if (args[i].equals("-workers")) {
+                workers = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-tasks")) {
+                tasks = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-load")) {
+                load = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("-heterogeneity")) {
+                heterogeneity = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("-drift")) {
+                drift = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("-seed")) {
+                seed = Long.parseLong(args[++i]);
+            } else {
+                usage();
+            }
+        }
+        final SchedulingSimulator simulator = new SchedulingSimulator(workers,
+                tasks, load, heterogeneity, drift, seed);
+        final EstimatorFactory factory = new EstimatorFactory() {
+            @Override
+            public Estimator newEstimator(final double v) {
+                return new LogGaussianDecayingEstimator(Math.log(v), 1, 0.1);
+            }
+        };
+        System.out.println(SimulationReport.getHeader());
+        for (final Scheduler s : getStandardSchedulers(seed)) {
+            System.out.println(simulator.run(s, factory));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package ibis.steel;
+
+/**
+ * The results of a run of the {@link SchedulingSimulator} with one scheduler.
+ * The report contains the quality of the schedule, measured as the makespan
+ * and the latencies of the tasks, and the cost of the scheduler.
+ */
+public class SimulationReport {
+    private final String name;
+    long tasks = 0;
+    double makespan = 0;
+    double meanLatency = 0;
+    double p99Latency = 0;
+    long decisionNanos = 0;
+
+    SimulationReport(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the scheduler.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of simulated tasks.
+     *
+     * @return The number of tasks.
+     */
+    public long getTaskCount() {
+        return tasks;
+    }
+
+    /**
+     * Returns the time at which the last task completed.
+     *
+     * @return The makespan.
+     */
+    public double getMakespan() {
+        return makespan;
+    }
+
+    /**
+     * Returns the mean time between the arrival and the completion of a task.
+     *
+     * @return The mean latency.
+     */
+    public double getMeanLatency() {
+        return meanLatency;
+    }
+
+    /**
+     * Returns the 99th percentile of the time between the arrival and the
+     * completion of a task.
+     *
+     * @return The 99th percentile of the latency.
+     */
+    public double getP99Latency() {
+        return p99Latency;
+    }
+
+    /**
+     * Returns the average time spent by the scheduler per decision, in
+     * nanoseconds. The cost of reading the clock has been subtracted, so
+     * this is only accurate for long runs.
+     *
+     * @return The time per decision.
+     */
+    public double getNanosPerDecision() {
+        return (double) decisionNanos / tasks;
+    }
+
+    /**
+     * Returns the header line for a table of reports in the format of
+     * {@link #toString()}.
+     *
+     * @return The header line.
+     */
+    public static String getHeader() {
+        return String.format("%-24s %10s %12s %12s %12s %12s", "scheduler",
+                "tasks", "makespan", "mean lat", "p99 lat", "ns/decision");
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-24s %10d %12s %12s %12s %12.1f", name, tasks,
+                Utils.formatNumber(makespan), Utils.formatNumber(meanLatency),
+                Utils.formatNumber(p99Latency), getNanosPerDecision());
+    }
+}
@@ -0,0 +1,27 @@
+package ibis.steel;
+
+/**
+ * An estimate expression that is the sum of two independent expressions.
+ * Sums of more operands are built as trees of these nodes.
+ */
+class SumExpression extends EstimateExpression {
+    private final EstimateExpression left;
+    private final EstimateExpression right;
+
+    SumExpression(final EstimateExpression left, final EstimateExpression right) {
+        this.left = left;
+        this.right = right;
+        left.addParent(this);
+        right.addParent(this);
+    }
+
+    @Override
+    Estimate compute() {
+        return left.getEstimate().addIndependent(right.getEstimate());
+    }
+
+    @Override
+    public String toString() {
+        return "(" + left + " + " + right + ")";
+    }
+}
@@ -0,0 +1,85 @@
+package ibis.steel;
+
+/**
+ * Verifies {@link Estimate#sumIndependent(int)} of the Gaussian and
+ * log-Gaussian estimates against exact moments and Monte Carlo simulations.
+ * Every check is reported, and the program exits with status 1 if one of
+ * them fails.
+ */
+class SumIndependentCheck {
+    /**
+     * Returns the mean and the variance of the given estimate.
+     */
+    private static double[] getMoments(final Estimate est) {
+        if (est instanceof LogGaussianEstimate) {
+            final LogGaussianEstimate lest = (LogGaussianEstimate) est;
+            final double m = Math.exp(lest.logMean + 0.5 * lest.logVariance);
+            return new double[] { m, Math.expm1(lest.logVariance) * m * m };
+        }
+        final GaussianEstimate gest = (GaussianEstimate) est;
+        return new double[] { gest.mean, gest.variance };
+    }
+
+    /**
+     * Checks the mean and the variance of the sum of <code>k</code>
+     * independent values, as given by {@link Estimate#sumIndependent(int)},
+     * against <code>k</code> times the mean and variance of the estimate, and
+     * against the mean and the variance of random sums of <code>k</code>
+     * draws. The tolerance of the latter is four Monte Carlo standard errors.
+     */
+    private static void checkSum(final String name, final Estimate est,
+            final double mean, final double stdDev, final boolean logarithmic,
+            final int k) {
+        final double moments[] = getMoments(est);
+        final double sumMoments[] = getMoments(est.sumIndependent(k));
+        MonteCarloCheck.check(name + " sum of " + k + " mean", sumMoments[0],
+                k * moments[0], 1e-12);
+        MonteCarloCheck.check(name + " sum of " + k + " variance",
+                sumMoments[1], k * moments[1], 1e-12);
+        final int n = 500000;
+        final double draws[] = MonteCarloCheck.draw(mean, stdDev, logarithmic,
+                n * k, k);
+        final double sums[] = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            double s = 0;
+            for (int j = 0; j < k; j++) {
+                s += draws[i * k + j];
+            }
+            sums[i] = s;
+            sum += s;
+        }
+        final double m = sum / n;
+        double m2 = 0;
+        double m4 = 0;
+        for (final double s : sums) {
+            final double d = (s - m) * (s - m);
+            m2 += d;
+            m4 += d * d;
+        }
+        m2 /= n;
+        m4 /= n;
+        MonteCarloCheck.check(name + " sum of " + k + " mean, Monte Carlo",
+                sumMoments[0], m, 4 * Math.sqrt(m2 / n) / m);
+        MonteCarloCheck.check(name + " sum of " + k
+                + " variance, Monte Carlo", sumMoments[1], m2,
+                4 * Math.sqrt((m4 - m2 * m2) / n) / m2);
+    }
+
+    /**
+     * Checks the sums of 2 and 20 independent values of a Gaussian(10, 4)
+     * and a log-Gaussian(1, 0.5) estimate.
+     *
+     * @param args
+     *            Ignored.
+     */
+    public static void main(final String[] args) {
+        for (final int k : new int[] { 2, 20 }) {
+            checkSum("gaussian", new GaussianEstimate(10, 4, 100), 10, 2,
+                    false, k);
+            checkSum("log-gaussian", new LogGaussianEstimate(1, 0.5, 100), 1,
+                    Math.sqrt(0.5), true, k);
+        }
+        MonteCarloCheck.finish();
+    }
+}
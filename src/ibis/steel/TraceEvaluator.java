@@ -0,0 +1,438 @@
+package ibis.steel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Replays recorded traces of samples through a number of estimator models,
+ * and reports for each model how well it predicts the samples, and how much
+ * time and memory it costs. See {@link ModelReport} for the reported values.
+ * <p>
+ * Every key in the trace gets its own estimator, created by the factory of
+ * the model from the first sample of the key. The keys can be divided over a
+ * number of threads; the samples of a key are always replayed in order by
+ * the same thread.
+ * <p>
+ * Samples that a model rejects, because its factory or its estimator throws
+ * an exception, are counted in the report of the model, and are otherwise
+ * ignored.
+ * <p>
+ * The {@link #main(String[])} method evaluates the standard estimators on a
+ * recorded trace, or on a synthetic one.
+ */
+public class TraceEvaluator {
+    private final List<String> modelNames = new ArrayList<String>();
+    private final List<EstimatorFactory> factories = new ArrayList<EstimatorFactory>();
+    private int keyCount = 0;
+    private int sampleCount = 0;
+    private int keyIds[] = new int[1024];
+    private double values[] = new double[1024];
+
+    /** The allocation counter of the current thread, if available. */
+    private static final Method allocatedBytesMethod = getAllocatedBytesMethod();
+
+    private static Method getAllocatedBytesMethod() {
+        try {
+            final Class<?> c = Class
+                    .forName("com.sun.management.ThreadMXBean");
+            if (c.isInstance(ManagementFactory.getThreadMXBean())) {
+                return c.getMethod("getThreadAllocatedBytes", long.class);
+            }
+        } catch (final Exception e) {
+            // Not available on this JVM.
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread, or
+     * -1 if this is not known.
+     */
+    private static long getAllocatedBytes() {
+        if (allocatedBytesMethod == null) {
+            return -1;
+        }
+        try {
+            return (Long) allocatedBytesMethod.invoke(
+                    ManagementFactory.getThreadMXBean(), Thread
+                            .currentThread().getId());
+        } catch (final Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Adds a model to evaluate.
+     *
+     * @param name
+     *            The name of the model in the report.
+     * @param factory
+     *            The factory of the estimators of the model.
+     */
+    public void addModel(final String name, final EstimatorFactory factory) {
+        modelNames.add(name);
+        factories.add(factory);
+    }
+
+    /**
+     * Reads a trace that was written by a {@link TraceWriter}, and appends its
+     * samples to the samples to replay. Keys of different traces are
+     * considered to be different, even if they have the same name.
+     *
+     * @param stream
+     *            The stream to read the trace from.
+     * @throws IOException
+     *             Thrown if the trace cannot be read.
+     */
+    public void readTrace(final InputStream stream) throws IOException {
+        final TraceReader reader = new TraceReader(stream);
+        final int firstKey = keyCount;
+        while (reader.next()) {
+            if (sampleCount == keyIds.length) {
+                final int n = 2 * sampleCount;
+                final int newKeyIds[] = new int[n];
+                final double newValues[] = new double[n];
+                System.arraycopy(keyIds, 0, newKeyIds, 0, sampleCount);
+                System.arraycopy(values, 0, newValues, 0, sampleCount);
+                keyIds = newKeyIds;
+                values = newValues;
+            }
+            final int key = firstKey + reader.getKeyId();
+            keyIds[sampleCount] = key;
+            values[sampleCount] = reader.getValue();
+            sampleCount++;
+            if (key >= keyCount) {
+                keyCount = key + 1;
+            }
+        }
+        reader.close();
+    }
+
+    /**
+     * Returns the indices of the samples of each thread.
+     */
+    private int[][] partition(final int threads) {
+        final int counts[] = new int[threads];
+        for (int i = 0; i < sampleCount; i++) {
+            counts[keyIds[i] % threads]++;
+        }
+        final int res[][] = new int[threads][];
+        for (int t = 0; t < threads; t++) {
+            res[t] = new int[counts[t]];
+            counts[t] = 0;
+        }
+        for (int i = 0; i < sampleCount; i++) {
+            final int t = keyIds[i] % threads;
+            res[t][counts[t]++] = i;
+        }
+        return res;
+    }
+
+    /**
+     * Replays the given samples through new estimators of the given model.
+     * The first pass predicts every sample before it is added, and records
+     * the prediction errors. The second pass adds the same samples to a
+     * second set of estimators, and only measures the time and the
+     * allocations of {@link Estimator#addSample(double)}; the predictions and
+     * the creation of the estimators are not included.
+     */
+    private void replay(final EstimatorFactory factory, final int samples[],
+            final int limit, final ModelReport report) {
+        final Estimator estimators[] = new Estimator[keyCount];
+        final boolean added[] = new boolean[limit];
+        for (int i = 0; i < limit; i++) {
+            final int ix = samples[i];
+            final double v = values[ix];
+            final Estimator est = estimators[keyIds[ix]];
+            try {
+                if (est == null) {
+                    estimators[keyIds[ix]] = factory.newEstimator(v);
+                } else {
+                    final double predicted = PredictionTracker
+                            .getPredictedValue(est.getEstimate());
+                    final double high = est.getHighEstimate();
+                    est.addSample(v);
+                    report.tracker.record(predicted, high, v);
+                    added[i] = true;
+                }
+            } catch (final RuntimeException e) {
+                // The model does not accept this sample, for example a
+                // zero sample for a log-Gaussian model. Count it, and
+                // continue with the next one.
+                report.rejected++;
+            }
+        }
+
+        // Every key gets its estimator before its first added sample, so
+        // the estimators can all be created before the measurement.
+        final Estimator timed[] = new Estimator[keyCount];
+        int count = 0;
+        for (int i = 0; i < limit; i++) {
+            final int ix = samples[i];
+            if (added[i]) {
+                count++;
+            } else if (estimators[keyIds[ix]] != null
+                    && timed[keyIds[ix]] == null) {
+                try {
+                    timed[keyIds[ix]] = factory.newEstimator(values[ix]);
+                } catch (final RuntimeException e) {
+                    // Already counted in the first pass.
+                }
+            }
+        }
+        final long startBytes = getAllocatedBytes();
+        final long startTime = System.nanoTime();
+        for (int i = 0; i < limit; i++) {
+            if (added[i]) {
+                final int ix = samples[i];
+                try {
+                    timed[keyIds[ix]].addSample(values[ix]);
+                } catch (final RuntimeException e) {
+                    // Already counted in the first pass.
+                }
+            }
+        }
+        report.nanos = System.nanoTime() - startTime;
+        final long endBytes = getAllocatedBytes();
+        report.samples = count;
+        if (startBytes < 0 || endBytes < 0) {
+            report.allocationKnown = false;
+        } else {
+            report.allocatedBytes = endBytes - startBytes;
+        }
+    }
+
+    private ModelReport evaluate(final String name,
+            final EstimatorFactory factory, final int partitions[][]) {
+        final ModelReport reports[] = new ModelReport[partitions.length];
+        final Thread threads[] = new Thread[partitions.length];
+        for (int t = 0; t < partitions.length; t++) {
+            final int samples[] = partitions[t];
+            final ModelReport report = new ModelReport(name);
+            reports[t] = report;
+            threads[t] = new Thread("replay-" + name + "-" + t) {
+                @Override
+                public void run() {
+                    // Warm up, so that the first model is not penalized for
+                    // the compilation of the replay loop.
+                    replay(factory, samples, Math.min(samples.length, 100000),
+                            new ModelReport(name));
+                    replay(factory, samples, samples.length, report);
+                }
+            };
+            threads[t].start();
+        }
+        final ModelReport res = new ModelReport(name);
+        for (int t = 0; t < partitions.length; t++) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    threads[t].join();
+                    break;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            res.merge(reports[t]);
+        }
+        return res;
+    }
+
+    /**
+     * Replays the samples through all models, and returns a report for each
+     * model.
+     *
+     * @param threads
+     *            The number of threads to divide the keys over.
+     * @return The reports, in the order in which the models were added.
+     */
+    public List<ModelReport> evaluate(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Bad thread count: " + threads);
+        }
+        final int partitions[][] = partition(threads);
+        final List<ModelReport> res = new ArrayList<ModelReport>();
+        for (int i = 0; i < factories.size(); i++) {
+            res.add(evaluate(modelNames.get(i), factories.get(i), partitions));
+        }
+        return res;
+    }
+
+    /**
+     * Writes a synthetic trace. Every key has a log-Gaussian distribution
+     * with its own parameters, with a slowly drifting median, and with
+     * occasional outliers that are 20 times slower.
+     *
+     * @param stream
+     *            The stream to write to.
+     * @param keys
+     *            The number of keys.
+     * @param samples
+     *            The number of samples.
+     * @param seed
+     *            The seed of the random generator.
+     * @throws IOException
+     *             Thrown if the trace cannot be written.
+     */
+    public static void writeSyntheticTrace(final OutputStream stream,
+            final int keys, final int samples, final long seed)
+            throws IOException {
+        final Random rng = new Random(seed);
+        final double logMedians[] = new double[keys];
+        final double logStdDevs[] = new double[keys];
+        final String names[] = new String[keys];
+        for (int k = 0; k < keys; k++) {
+            logMedians[k] = 5 * rng.nextDouble();
+            logStdDevs[k] = 0.1 + 0.9 * rng.nextDouble();
+            names[k] = "key" + k;
+        }
+        final TraceWriter writer = new TraceWriter(stream);
+        long time = 0;
+        for (int i = 0; i < samples; i++) {
+            final int k = rng.nextInt(keys);
+            logMedians[k] += 0.01 * rng.nextGaussian();
+            double v = Math.exp(logMedians[k] + logStdDevs[k]
+                    * rng.nextGaussian());
+            if (rng.nextDouble() < 0.005) {
+                v *= 20;
+            }
+            time += 1 + (long) (-1000 * Math.log(1 - rng.nextDouble()));
+            writer.addSample(names[k], time, v);
+        }
+        writer.close();
+    }
+
+    /**
+     * Returns the log of the given first sample of a log-Gaussian model.
+     */
+    private static double getLog(final double v) {
+        if (v <= 0 || Double.isInfinite(v)) {
+            throw new IllegalArgumentException("Bad sample: v=" + v);
+        }
+        return Math.log(v);
+    }
+
+    /**
+     * Adds the standard estimators of this package as models.
+     */
+    void addStandardModels() {
+        addModel("gaussian", new EstimatorFactory() {
+            @Override
+            public Estimator newEstimator(final double v) {
+                return new GaussianEstimator(v, v * v);
+            }
+        });
+        addModel("gaussian-decaying", new EstimatorFactory() {
+            @Override
+            public Estimator newEstimator(final double v) {
+                return new GaussianDecayingEstimator(v, v * v, 0.1);
+            }
+        });
+        addModel("robust-gaussian", new EstimatorFactory() {
+            @Override
+            public Estimator newEstimator(final double v) {
+                return new RobustGaussianEstimator(v, v * v);
+            }
+        });
+        addModel("log-gaussian", new EstimatorFactory() {
+            @Override
+            public Estimator newEstimator(final double v) {
+                return new LogGaussianEstimator(getLog(v), 1);
+            }
+        });
+        addModel("log-gaussian-decaying", new EstimatorFactory() {
+            @Override
+            public Estimator newEstimator(final double v) {
+                return new LogGaussianDecayingEstimator(getLog(v), 1, 0.1);
+            }
+        });
+        addModel("robust-log-gaussian", new EstimatorFactory() {
+            @Override
+            public Estimator newEstimator(final double v) {
+                return new RobustLogGaussianEstimator(getLog(v), 1);
+            }
+        });
+        addModel("model-selection", new EstimatorFactory() {
+            @Override
+            public Estimator newEstimator(final double v) {
+                return new ModelSelectingEstimator(new GaussianEstimator(v, v
+                        * v), new GaussianDecayingEstimator(v, v * v, 0.1),
+                        new LogGaussianEstimator(getLog(v), 1),
+                        new LogGaussianDecayingEstimator(getLog(v), 1, 0.1));
+            }
+        });
+    }
+
+    private static void usage() {
+        System.err.println("Usage: TraceEvaluator [-threads <n>]"
+                + " (<trace> | -synthetic <keys> <samples> [<trace>])");
+        System.exit(2);
+    }
+
+    /**
+     * Evaluates the standard estimators on a recorded or a synthetic trace.
+     * Arguments: <code>[-threads n] trace</code> to replay a recorded trace,
+     * or <code>[-threads n] -synthetic keys samples [trace]</code> to replay
+     * a synthetic trace, and optionally write it to a file.
+     *
+     * @param args
+     *            The command-line arguments.
+     * @throws IOException
+     *             Thrown if a trace cannot be read or written.
+     */
+    public static void main(final String[] args) throws IOException {
+        int threads = 1;
+        int keys = -1;
+        int samples = -1;
+        String file = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-synthetic") && i + 2 < args.length) {
+                keys = Integer.parseInt(args[++i]);
+                samples = Integer.parseInt(args[++i]);
+            } else if (file == null && !args[i].startsWith("-")) {
+                file = args[i];
+            } else {
+                usage();
+            }
+        }
+        final TraceEvaluator evaluator = new TraceEvaluator();
+        if (keys >= 0) {
+            if (file == null) {
+                final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                writeSyntheticTrace(buffer, keys, samples, 1);
+                System.out.println("Synthetic trace of " + samples
+                        + " samples takes " + buffer.size() + " bytes");
+                evaluator.readTrace(new ByteArrayInputStream(buffer
+                        .toByteArray()));
+            } else {
+                writeSyntheticTrace(new FileOutputStream(file), keys, samples,
+                        1);
+                evaluator.readTrace(new FileInputStream(file));
+            }
+        } else if (file != null) {
+            evaluator.readTrace(new FileInputStream(file));
+        } else {
+            usage();
+        }
+        evaluator.addStandardModels();
+        System.out.println(ModelReport.getHeader());
+        for (final ModelReport r : evaluator.evaluate(threads)) {
+            System.out.println(r);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package ibis.steel;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a trace of samples that was recorded by a {@link TraceWriter}. After
+ * every successful call of {@link #next()}, the key, timestamp and value of
+ * the next sample are available.
+ */
+public class TraceReader implements Closeable {
+    private final DataInputStream in;
+    private final List<String> keys = new ArrayList<String>();
+    private int keyId = -1;
+    private long timestamp = 0;
+    private double value = 0;
+
+    /**
+     * Constructs a new trace reader on the given stream.
+     *
+     * @param stream
+     *            The stream to read the trace from.
+     * @throws IOException
+     *             Thrown if the stream does not contain a trace.
+     */
+    public TraceReader(final InputStream stream) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(stream));
+        final int magic = in.readInt();
+        final int version = in.readByte();
+        if (magic != TraceWriter.MAGIC || version != TraceWriter.VERSION) {
+            throw new IOException("Not a trace, or unsupported trace version");
+        }
+    }
+
+    /**
+     * Reads the next sample of the trace.
+     *
+     * @return <code>true</code> if a sample was read, or <code>false</code> if
+     *         the end of the trace was reached.
+     * @throws IOException
+     *             Thrown if the trace cannot be read.
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            final int tag = in.read();
+            if (tag < 0) {
+                return false;
+            }
+            if (tag == TraceWriter.KEY) {
+                keys.add(in.readUTF());
+            } else if (tag == TraceWriter.SAMPLE) {
+                final long id = readVarLong(in);
+                if (id >= keys.size()) {
+                    throw new IOException("Undefined key " + id);
+                }
+                keyId = (int) id;
+                final long zigzag = readVarLong(in);
+                timestamp += (zigzag >>> 1) ^ -(zigzag & 1);
+                value = in.readDouble();
+                return true;
+            } else {
+                throw new IOException("Unknown record tag " + tag);
+            }
+        }
+    }
+
+    private static long readVarLong(final DataInputStream in)
+            throws IOException {
+        long res = 0;
+        int shift = 0;
+        while (true) {
+            final int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated trace");
+            }
+            res |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return res;
+            }
+            shift += 7;
+        }
+    }
+
+    /**
+     * Returns the number of the key of the current sample. Keys are numbered
+     * from 0 in order of their first appearance in the trace.
+     *
+     * @return The key number.
+     */
+    public int getKeyId() {
+        return keyId;
+    }
+
+    /**
+     * Returns the key of the current sample.
+     *
+     * @return The key.
+     */
+    public String getKey() {
+        return keys.get(keyId);
+    }
+
+    /**
+     * Returns the key with the given number.
+     *
+     * @param id
+     *            The number of the key.
+     * @return The key.
+     */
+    public String getKey(final int id) {
+        return keys.get(id);
+    }
+
+    /**
+     * Returns the timestamp of the current sample.
+     *
+     * @return The timestamp.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the value of the current sample.
+     *
+     * @return The value.
+     */
+    public double getValue() {
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,95 @@
+package ibis.steel;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records a stream of samples in a compact binary trace, for later replay by
+ * a {@link TraceReader}. Every sample has a key, a timestamp and a value. A
+ * key is written only once, after which it is referred to by a small number.
+ * Timestamps are written as variable-length differences with the previous
+ * timestamp, so a sample usually takes 12 or 13 bytes.
+ */
+public class TraceWriter implements Closeable {
+    static final int MAGIC = 0x53544c54;
+    static final int VERSION = 1;
+    static final int KEY = 0;
+    static final int SAMPLE = 1;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> keys = new HashMap<String, Integer>();
+    private long previousTimestamp = 0;
+
+    /**
+     * Constructs a new trace writer on the given stream.
+     *
+     * @param stream
+     *            The stream to write the trace to.
+     * @throws IOException
+     *             Thrown if the header of the trace cannot be written.
+     */
+    public TraceWriter(final OutputStream stream) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    /**
+     * Records the given sample.
+     *
+     * @param key
+     *            The key of the sample.
+     * @param timestamp
+     *            The timestamp of the sample, in an arbitrary unit.
+     * @param value
+     *            The value of the sample.
+     * @throws IOException
+     *             Thrown if the sample cannot be written.
+     */
+    public void addSample(final String key, final long timestamp,
+            final double value) throws IOException {
+        Integer id = keys.get(key);
+        if (id == null) {
+            id = keys.size();
+            keys.put(key, id);
+            out.writeByte(KEY);
+            out.writeUTF(key);
+        }
+        out.writeByte(SAMPLE);
+        writeVarLong(out, id);
+        final long delta = timestamp - previousTimestamp;
+        // Zig-zag encoding, so that small negative differences are short too.
+        writeVarLong(out, (delta << 1) ^ (delta >> 63));
+        out.writeDouble(value);
+        previousTimestamp = timestamp;
+    }
+
+    private static void writeVarLong(final DataOutputStream out, long v)
+            throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) (v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    /**
+     * Writes any buffered samples to the underlying stream.
+     *
+     * @throws IOException
+     *             Thrown if the samples cannot be written.
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,105 @@
+package ibis.steel;
+
+/**
+ * An estimator that tracks how well another estimator predicts its samples.
+ * Before a sample is added to the wrapped estimator, its current point
+ * prediction and high estimate are taken, and once the estimator has accepted
+ * the sample, they are recorded together with the sample in a
+ * {@link PredictionTracker}. In all
+ * other respects the tracking estimator behaves like the wrapped one.
+ */
+public class TrackingEstimator implements Estimator {
+    private final Estimator estimator;
+    private final PredictionTracker tracker;
+
+    /**
+     * Constructs a new tracking estimator with the given tracker.
+     *
+     * @param estimator
+     *            The estimator to track.
+     * @param tracker
+     *            The tracker to record the predictions in.
+     */
+    public TrackingEstimator(final Estimator estimator,
+            final PredictionTracker tracker) {
+        this.estimator = estimator;
+        this.tracker = tracker;
+    }
+
+    /**
+     * Constructs a new tracking estimator with a new tracker.
+     *
+     * @param estimator
+     *            The estimator to track.
+     */
+    public TrackingEstimator(final Estimator estimator) {
+        this(estimator, new PredictionTracker());
+    }
+
+    /**
+     * Returns the tracker of this estimator.
+     *
+     * @return The tracker.
+     */
+    public PredictionTracker getTracker() {
+        return tracker;
+    }
+
+    /**
+     * Returns the tracked estimator.
+     *
+     * @return The estimator.
+     */
+    public Estimator getEstimator() {
+        return estimator;
+    }
+
+    @Override
+    public void addSample(final double v) {
+        final double predicted = PredictionTracker
+                .getPredictedValue(estimator.getEstimate());
+        final double high = estimator.getHighEstimate();
+        estimator.addSample(v);
+        tracker.record(predicted, high, v);
+    }
+
+    @Override
+    public double getLikelyValue() {
+        return estimator.getLikelyValue();
+    }
+
+    @Override
+    public String getName() {
+        return estimator.getName();
+    }
+
+    @Override
+    public double getHighEstimate() {
+        return estimator.getHighEstimate();
+    }
+
+    @Override
+    public int getSampleCount() {
+        return estimator.getSampleCount();
+    }
+
+    @Override
+    public Estimate getEstimate() {
+        return estimator.getEstimate();
+    }
+
+    @Override
+    public String getStatisticsString() {
+        return estimator.getStatisticsString() + " " + tracker;
+    }
+
+    @Override
+    public String format() {
+        return estimator.format();
+    }
+
+    @Override
+    public String toString() {
+        return estimator.toString();
+    }
+}